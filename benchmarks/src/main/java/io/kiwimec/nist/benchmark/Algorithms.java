@@ -0,0 +1,37 @@
+package io.kiwimec.nist.benchmark;
+
+import io.kiwimec.nist.drbg.Aes256CtrNoDf;
+import io.kiwimec.nist.drbg.AesCtrDf;
+import io.kiwimec.nist.drbg.Algorithm;
+import io.kiwimec.nist.drbg.HashDrbg;
+import io.kiwimec.nist.drbg.HmacDrbg;
+
+/**
+ * Maps the <code>algorithm</code> benchmark parameter to a DRBG algorithm.
+ */
+final class Algorithms {
+
+    private Algorithms() {
+    }
+
+    static Algorithm create(String algorithm) {
+        switch (algorithm) {
+            case "AES-256-CTR":
+                return new Aes256CtrNoDf(true);
+            case "AES-128-CTR-DF":
+                return new AesCtrDf(AesCtrDf.Aes.AES_128, true);
+            case "AES-256-CTR-DF":
+                return new AesCtrDf(AesCtrDf.Aes.AES_256, true);
+            case "SHA-256-HASH":
+                return new HashDrbg(HashDrbg.Hash.SHA_256, true);
+            case "SHA-512-HASH":
+                return new HashDrbg(HashDrbg.Hash.SHA_512, true);
+            case "SHA-256-HMAC":
+                return new HmacDrbg(HmacDrbg.Hash.SHA_256, true);
+            case "SHA-512-HMAC":
+                return new HmacDrbg(HmacDrbg.Hash.SHA_512, true);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+    }
+}
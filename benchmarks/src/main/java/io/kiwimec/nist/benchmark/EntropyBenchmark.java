@@ -0,0 +1,84 @@
+package io.kiwimec.nist.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kiwimec.nist.source.CombinedEntropy;
+import io.kiwimec.nist.source.DeviceEntropy;
+import io.kiwimec.nist.source.Entropy;
+import io.kiwimec.nist.source.JitterEntropy;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Cost of one Get_entropy_input of 384 bits, a seedlen of AES-256 CTR_DRBG,
+ * from each entropy source.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EntropyBenchmark {
+
+    @Param({ "SecureRandom", "Device", "Jitter", "Combined" })
+    public String source;
+
+    @Param({ "false", "true" })
+    public boolean prediction_resistance;
+
+    private Entropy entropy_source;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        switch (source) {
+            case "SecureRandom":
+                entropy_source = new SecureRandomEntropy();
+                break;
+            case "Device":
+                entropy_source = new DeviceEntropy();
+                break;
+            case "Jitter":
+                entropy_source = new JitterEntropy();
+                break;
+            case "Combined":
+                entropy_source = new CombinedEntropy(new DeviceEntropy(), new JitterEntropy());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown source " + source);
+        }
+        if (entropy_source.Startup_test() != Status.SUCCESS)
+            throw new IllegalStateException("Start-up test failed");
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        if (entropy_source instanceof AutoCloseable)
+            ((AutoCloseable) entropy_source).close();
+    }
+
+    @Benchmark
+    public byte[] get_entropy_input() {
+        Tuple2<Status, byte[]> entropy_input = entropy_source.Get_entropy_input(256, 384, 384,
+                prediction_resistance);
+        if (entropy_input.first != Status.SUCCESS)
+            throw new IllegalStateException("Get_entropy_input returned " + entropy_input.first);
+        return entropy_input.second;
+    }
+}
@@ -0,0 +1,101 @@
+package io.kiwimec.nist.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Generate_function throughput for each algorithm across request sizes from 16
+ * bytes up to the AES-256 CTR_DRBG max_number_of_bits_per_request, with and
+ * without prediction resistance and additional input. Every benchmark thread owns its own Mechanism so the
+ * threaded variant shows how generation scales across cores.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerateBenchmark {
+
+    @Param({ "16", "32", "256", "1024", "4032" })
+    public int bytes;
+
+    private static final byte[] PERSONALIZATION_STRING = "benchmark".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ADDITIONAL_INPUT = "connection-0123456789abcdef"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Param({ "AES-256-CTR", "AES-128-CTR-DF", "AES-256-CTR-DF", "SHA-256-HASH", "SHA-512-HASH",
+            "SHA-256-HMAC", "SHA-512-HMAC" })
+    public String algorithm;
+
+    @Param({ "false", "true" })
+    public boolean prediction_resistance;
+
+    @Param({ "false", "true" })
+    public boolean additional;
+
+    private Mechanism mechanism;
+    private int security_strength;
+    private int state_handle;
+    private ByteBuffer additional_input;
+    private byte[] pseudorandom_bits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), Algorithms.create(algorithm));
+        security_strength = mechanism.getHighestSupportedSecurityStrength();
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(security_strength, prediction_resistance,
+                ByteBuffer.wrap(PERSONALIZATION_STRING));
+        if (instantiated.first != Status.SUCCESS)
+            throw new IllegalStateException("Instantiate_function returned " + instantiated.first);
+        state_handle = instantiated.second;
+        additional_input = additional ? ByteBuffer.wrap(ADDITIONAL_INPUT) : null;
+        pseudorandom_bits = new byte[bytes];
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        mechanism.Uninstantiate_function(state_handle);
+    }
+
+    @Benchmark
+    public Tuple2<Status, byte[]> generate() {
+        return mechanism.Generate_function(state_handle, bytes << 3, security_strength, prediction_resistance,
+                additional_input);
+    }
+
+    @Benchmark
+    public Status generate_into() {
+        return mechanism.Generate_function(state_handle, bytes << 3, security_strength, prediction_resistance,
+                additional_input, pseudorandom_bits, 0);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Status generate_into_threads() {
+        return mechanism.Generate_function(state_handle, bytes << 3, security_strength, prediction_resistance,
+                additional_input, pseudorandom_bits, 0);
+    }
+}
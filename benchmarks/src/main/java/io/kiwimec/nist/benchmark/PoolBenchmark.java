@@ -0,0 +1,100 @@
+package io.kiwimec.nist.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.drbg.MechanismPool;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Small requests from every thread against one shared generator, either a
+ * single instantiation, which serialises the threads on its state lock, or a
+ * striped <code>MechanismPool</code>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(Threads.MAX)
+public class PoolBenchmark {
+
+    private static final byte[] PERSONALIZATION_STRING = "benchmark".getBytes(StandardCharsets.US_ASCII);
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({ "AES-256-CTR", "AES-256-CTR-DF", "SHA-256-HASH", "SHA-256-HMAC" })
+        public String algorithm;
+
+        public Mechanism mechanism;
+        public int state_handle;
+        public MechanismPool pool;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), Algorithms.create(algorithm));
+            Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(256, false,
+                    ByteBuffer.wrap(PERSONALIZATION_STRING));
+            if (instantiated.first != Status.SUCCESS)
+                throw new IllegalStateException("Instantiate_function returned " + instantiated.first);
+            state_handle = instantiated.second;
+
+            pool = new MechanismPool(new SecureRandomEntropy(), new Nonce(), Algorithms.create(algorithm));
+            Status status = pool.Instantiate_function(256, false, ByteBuffer.wrap(PERSONALIZATION_STRING));
+            if (status != Status.SUCCESS)
+                throw new IllegalStateException("Instantiate_function returned " + status);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            mechanism.Uninstantiate_function(state_handle);
+            pool.Uninstantiate_function();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+
+        @Param({ "16", "32", "256" })
+        public int bytes;
+
+        public byte[] pseudorandom_bits;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            pseudorandom_bits = new byte[bytes];
+        }
+    }
+
+    @Benchmark
+    public Status generate_shared(Shared shared, Request request) {
+        return shared.mechanism.Generate_function(shared.state_handle, request.bytes << 3, 256, false, null,
+                request.pseudorandom_bits, 0);
+    }
+
+    @Benchmark
+    public Status generate_pool(Shared shared, Request request) {
+        return shared.pool.Generate_function(request.bytes << 3, 256, false, null, request.pseudorandom_bits, 0);
+    }
+}
@@ -0,0 +1,91 @@
+package io.kiwimec.nist.benchmark;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kiwimec.nist.provider.KiwiProvider;
+
+/**
+ * Baseline against the JDK's own SP 800-90A implementation,
+ * <code>SecureRandom.getInstance("DRBG")</code>, for the same request sizes as
+ * <code>GenerateBenchmark</code>, alongside the same calls through
+ * <code>KiwiProvider</code>. The shared variant draws from one instance on all
+ * threads the way most applications use it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecureRandomBenchmark {
+
+    static {
+        Security.addProvider(new KiwiProvider());
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({ "DRBG", "KIWI-CTR-DRBG", "KIWI-HASH-DRBG", "KIWI-HMAC-DRBG" })
+        public String algorithm;
+
+        public SecureRandom random;
+
+        @Setup(Level.Trial)
+        public void setup() throws NoSuchAlgorithmException {
+            random = SecureRandom.getInstance(algorithm);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Request {
+
+        @Param({ "16", "32", "256", "1024", "4032" })
+        public int bytes;
+
+        public byte[] pseudorandom_bits;
+        public SecureRandom random;
+
+        @Setup(Level.Trial)
+        public void setup(Shared shared) throws NoSuchAlgorithmException {
+            pseudorandom_bits = new byte[bytes];
+            random = SecureRandom.getInstance(shared.algorithm);
+        }
+    }
+
+    @Benchmark
+    public byte[] next_bytes(Request request) {
+        request.random.nextBytes(request.pseudorandom_bits);
+        return request.pseudorandom_bits;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] next_bytes_threads(Request request) {
+        request.random.nextBytes(request.pseudorandom_bits);
+        return request.pseudorandom_bits;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] next_bytes_shared(Request request, Shared shared) {
+        shared.random.nextBytes(request.pseudorandom_bits);
+        return request.pseudorandom_bits;
+    }
+}
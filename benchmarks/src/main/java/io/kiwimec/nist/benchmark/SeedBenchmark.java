@@ -0,0 +1,96 @@
+package io.kiwimec.nist.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Cost of Instantiate_function and Reseed_function, which are dominated by
+ * entropy acquisition. Instantiation is paired with Uninstantiate_function so
+ * the mechanism does not accumulate states across invocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SeedBenchmark {
+
+    private static final byte[] PERSONALIZATION_STRING = "benchmark".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ADDITIONAL_INPUT = "connection-0123456789abcdef"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Param({ "AES-256-CTR", "AES-128-CTR-DF", "AES-256-CTR-DF", "SHA-256-HASH", "SHA-512-HASH",
+            "SHA-256-HMAC", "SHA-512-HMAC" })
+    public String algorithm;
+
+    @Param({ "false", "true" })
+    public boolean prediction_resistance;
+
+    @Param({ "false", "true" })
+    public boolean additional;
+
+    private Mechanism mechanism;
+    private int security_strength;
+    private Mechanism instantiating;
+    private int state_handle;
+    private ByteBuffer additional_input;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), Algorithms.create(algorithm));
+        security_strength = mechanism.getHighestSupportedSecurityStrength();
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(security_strength, prediction_resistance,
+                ByteBuffer.wrap(PERSONALIZATION_STRING));
+        if (instantiated.first != Status.SUCCESS)
+            throw new IllegalStateException("Instantiate_function returned " + instantiated.first);
+        state_handle = instantiated.second;
+        additional_input = additional ? ByteBuffer.wrap(ADDITIONAL_INPUT) : null;
+        instantiating = new Mechanism(new SecureRandomEntropy(), new Nonce(), Algorithms.create(algorithm));
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        mechanism.Uninstantiate_function(state_handle);
+    }
+
+    @Benchmark
+    public Status instantiate() {
+        Tuple2<Status, Integer> instantiated = instantiating.Instantiate_function(security_strength, prediction_resistance,
+                additional_input);
+        return instantiating.Uninstantiate_function(instantiated.second);
+    }
+
+    @Benchmark
+    public Status reseed() {
+        return mechanism.Reseed_function(state_handle, prediction_resistance, additional_input);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Status reseed_threads() {
+        return mechanism.Reseed_function(state_handle, prediction_resistance, additional_input);
+    }
+}
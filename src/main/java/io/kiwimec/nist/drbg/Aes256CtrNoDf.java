@@ -1,10 +1,14 @@
 package io.kiwimec.nist.drbg;
 
-import java.util.BitSet;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.kiwimec.nist.util.BitArray;
 import io.kiwimec.nist.util.Status;
-import io.kiwimec.nist.util.Tuple2;
-import io.kiwimec.nist.util.Tuple3;
 
 public class Aes256CtrNoDf extends Algorithm {
 
@@ -13,8 +17,9 @@ public class Aes256CtrNoDf extends Algorithm {
     // Input and output block length. Also inlen and outlen.
     private final int blocklen = 128;
 
-    // Counter field length.
-    private final int ctr_len = blocklen - 1;
+    // Counter field length, the whole block as in the CAVP AES-256 no df vectors,
+    // which have no [ctrlen] of their own.
+    private final int ctr_len = blocklen;
 
     // Key length.
     private final int keylen = 256;
@@ -25,11 +30,11 @@ public class Aes256CtrNoDf extends Algorithm {
     // Seed length.
     private final int seedlen = blocklen + keylen;
 
-    // Minimum entropy input length (No dervation function).
-    private final int min_length = seedlen;
+    // Minimum entropy input length (No dervation function). Ref.
+    // <code>Algorithm.min_length</code>.
 
-    // Maximum entropy input length (No dervation function).
-    private final int max_length = seedlen;
+    // Maximum entropy input length (No dervation function). Ref.
+    // <code>Algorithm.max_length</code>.
 
     // Maximum personalization string length (No dervation function). Ref.
     // <code>Algorithm.max_personalization_string_length</code>.
@@ -37,94 +42,327 @@ public class Aes256CtrNoDf extends Algorithm {
     // Maximum additional_input length (No dervation function). Ref.
     // <code>Algorithm.max_additional_input_length</code>.
 
-    // Maximum number of bits per request, min((2ctr_len - 4) × blocklen, 2^19) =
-    // min(32256,524288) = 32256. Ref.
-    // <code>Algorithm.max_number_of_bits_per_request</code>.
+    // Maximum number of bits per request, min((2^ctr_len - 4) × blocklen, 2^19) =
+    // 2^19. Ref. <code>Algorithm.max_number_of_bits_per_request</code>.
 
-    // Maximum number of requests between reseeds (2^48).
-    private final int reseed_interval = 48;
+    // Maximum number of requests between reseeds (2^48). Ref.
+    // <code>Algorithm.reseed_interval</code>.
 
     // ----- Working state.
 
-    private BitSet V = new BitSet(256);
-    private BitSet Key = new BitSet(1024);
-    private BitSet reseed_counter = new BitSet(48);
+    /**
+     * The CTR_DRBG working state. The spec values are kept as plain bytes, with
+     * the reseed_counter a long in <code>State</code>, so the hot path never walks
+     * individual bits. The cipher is keyed with
+     * <code>Key</code> and only re-keyed by <code>CTR_DRBG_Update</code>, every
+     * other Block_Encrypt reuses it as is.
+     */
+    static final class WorkingState extends State {
+
+        final byte[] V = new byte[16];
+        final byte[] Key = new byte[32];
+
+        // Keyed Block_Encrypt primitive for Key.
+        final Cipher cipher;
+
+        // Scratch space for CTR_DRBG_Update and the trailing partial output block,
+        // kept here so generation does not allocate per block.
+        final byte[] temp = new byte[48];
+        final byte[] seed_material = new byte[48];
+        final byte[] output_block = new byte[16];
+
+        // Successive values of V laid out back to back so a whole request is
+        // encrypted by a single cipher call. Grown on demand up to
+        // max_number_of_bits_per_request.
+        byte[] counter_blocks = new byte[48];
+
+        WorkingState() {
+            try {
+                cipher = Cipher.getInstance("AES/ECB/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/ECB/NoPadding is not available", e);
+            }
+        }
+
+        /**
+         * The cipher is keyed with the zeroed Key so its key schedule no longer
+         * holds the old one.
+         */
+        @Override
+        void erase() {
+            super.erase();
+            Arrays.fill(V, (byte) 0);
+            Arrays.fill(Key, (byte) 0);
+            Arrays.fill(temp, (byte) 0);
+            Arrays.fill(seed_material, (byte) 0);
+            Arrays.fill(output_block, (byte) 0);
+            Arrays.fill(counter_blocks, (byte) 0);
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Key, "AES"));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to key AES", e);
+            }
+        }
+    }
 
     /**
      * Initialises the configuration for this Algorithm instance.
-     * 
+     *
      * @param prediction_resistance_flag
      */
     public Aes256CtrNoDf(boolean prediction_resistance_flag) {
 
-        super(256, 384, 32256, 384, true);
+        super(256, 384, 384, 384, 1 << 19, 384, 1L << 48, prediction_resistance_flag);
     }
 
     // ----- Abstract Algorithm implementation.
 
     @Override
-    public State Instantiate_algorithm(byte[] entropy_input, String nonce, String personalization_string,
+    public State Instantiate_algorithm(byte[] entropy_input, byte[] nonce, ByteBuffer personalization_string,
             int security_strength) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'Instantiate_algorithm'");
+
+        WorkingState working_state = new WorkingState();
+        working_state.security_strength = security_strength;
+
+        // Comment: The nonce is not used without a derivation function.
+
+        // 1. temp = len (personalization_string).
+        // 2. If (temp < seedlen), then personalization_string = personalization_string
+        // || 0^(seedlen - temp).
+        // 3. seed_material = entropy_input ⊕ personalization_string.
+        byte[] seed_material = seed_material(working_state.seed_material, entropy_input, personalization_string);
+
+        // 4. Key = 0^keylen.
+        // 5. V = 0^blocklen.
+        rekey(working_state);
+
+        // 6. (Key, V) = CTR_DRBG_Update (seed_material, Key, V).
+        CTR_DRBG_Update(seed_material, working_state);
+        Arrays.fill(seed_material, (byte) 0);
+
+        // 7. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 8. Return (V, Key, reseed_counter).
+        return working_state;
     }
 
     @Override
-    public State Reseed_algorithm(State internal_state, byte[] entropy_input, String additional_input) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'Reseed_algorithm'");
+    public State Reseed_algorithm(State internal_state, byte[] entropy_input, ByteBuffer additional_input) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+
+        // 1. temp = len (additional_input).
+        // 2. If (temp < seedlen), then additional_input = additional_input ||
+        // 0^(seedlen - temp).
+        // 3. seed_material = entropy_input ⊕ additional_input.
+        byte[] seed_material = seed_material(working_state.seed_material, entropy_input, additional_input);
+
+        // 4. (Key, V) = CTR_DRBG_Update (seed_material, Key, V).
+        CTR_DRBG_Update(seed_material, working_state);
+        Arrays.fill(seed_material, (byte) 0);
+
+        // 5. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 6. Return (V, Key, reseed_counter).
+        return working_state;
     }
 
     @Override
-    public Tuple3<Status, byte[], State> Generate_algorithm(State working_state, int requested_number_of_bits,
-            String additional_input) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'Generate_algorithm'");
+    public Status Generate_algorithm(State internal_state, int requested_number_of_bits,
+            ByteBuffer additional_input, byte[] pseudorandom_bits, int offset) {
+
+        return Generate((WorkingState) internal_state, requested_number_of_bits, additional_input,
+                pseudorandom_bits, offset);
     }
 
     // ----- Local implementation
 
     /**
-     * Updates the internal state of the CTR_DRBG using the provided_data.
-     * 
-     * @param provided_data
-     * @param Key
-     * @param V
+     * The CTR_DRBG generate algorithm writing the returned_bits directly into
+     * <code>pseudorandom_bits</code> at <code>offset</code> and updating the
+     * working state in place.
+     *
+     * @param working_state
+     * @param requested_number_of_bits
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @param offset
      * @return
      */
-    private Tuple2<BitSet, BitSet> CTR_DRBG_Update(BitSet provided_data, BitSet Key, BitSet V) {
-
-        // 1. temp = Null.
-        BitSet temp = new BitSet();
-
-        // 2. While (len (temp) < seedlen) do
-        while (temp.length() < seedlen) {
-
-            // 2.1 If ctr_len < blocklen
-            if (ctr_len < blocklen) {
-
-                // 2.1.1 inc = (rightmost (V, ctr_len) + 1) mod 2ctr_len.
-                BitSet inc = V.get(ctr_len, V.size() - 1);
+    private Status Generate(WorkingState working_state, int requested_number_of_bits,
+            ByteBuffer additional_input, byte[] pseudorandom_bits, int offset) {
+
+        // 1. If reseed_counter > reseed_interval, then return (Status.RESEED_REQUIRED,
+        // Null, Null).
+        if (working_state.reseed_counter > reseed_interval)
+            return Status.RESEED_REQUIRED;
+
+        // 2. If (additional_input ≠ Null), then
+        // 2.1 temp = len (additional_input).
+        // 2.2 If (temp < seedlen), then additional_input = additional_input ||
+        // 0^(seedlen - temp).
+        // 2.3 (Key, V) = CTR_DRBG_Update (additional_input, Key, V).
+        // Else additional_input = 0^seedlen.
+        //
+        // NOTE a. A zero additional_input leaves the update xor as a no-op so it is
+        // simply represented by null.
+        byte[] provided_data = null;
+        if (additional_input != null && additional_input.hasRemaining()) {
+            provided_data = seed_material(working_state.seed_material, null, additional_input);
+            CTR_DRBG_Update(provided_data, working_state);
+        }
 
-                // 2.1.2 V = leftmost (V, blocklen-ctr_len) || inc.
-            }
+        // 3. temp = Null.
+        int length = (requested_number_of_bits + 7) >>> 3;
+
+        // 4. While (len (temp) < requested_number_of_bits) do:
+        // 4.1 If ctr_len < blocklen
+        // 4.1.1 inc = (rightmost (V, ctr_len) + 1) mod 2^ctr_len.
+        // 4.1.2 V = leftmost (V, blocklen-ctr_len) || inc.
+        // Else V = (V+1) mod 2^blocklen.
+        // 4.2 output_block = Block_Encrypt (Key, V).
+        // 4.3 temp = temp || output_block.
+        Block_Encrypt_counters(working_state, pseudorandom_bits, offset, length);
+
+        // 5. returned_bits = leftmost (temp, requested_number_of_bits).
+        int spare_bits = (length << 3) - requested_number_of_bits;
+        if (spare_bits != 0)
+            pseudorandom_bits[offset + length - 1] &= (byte) (0xFF << spare_bits);
+
+        // Comment: Update for backtracking resistance.
+        // 6. (Key, V) = CTR_DRBG_Update (additional_input, Key, V).
+        CTR_DRBG_Update(provided_data, working_state);
+        if (provided_data != null)
+            Arrays.fill(provided_data, (byte) 0);
+
+        // 7. reseed_counter = reseed_counter + 1.
+        working_state.reseed_counter++;
+
+        // 8. Return (SUCCESS, returned_bits, V, Key, reseed_counter).
+        return Status.SUCCESS;
+    }
 
-            // Else V = (V+1) mod 2blocklen.
+    /**
+     * Updates the internal state of the CTR_DRBG using the provided_data. The Key
+     * and V of the working state are replaced in place and the cipher is re-keyed.
+     * A null provided_data is taken to be 0^seedlen.
+     *
+     * @param provided_data
+     * @param working_state
+     */
+    private void CTR_DRBG_Update(byte[] provided_data, WorkingState working_state) {
 
-            // 2.2 output_block = Block_Encrypt (Key, V).
+        byte[] temp = working_state.temp;
 
-            // 2.3 temp = temp || output_block.
-        }
+        // 1. temp = Null.
+        // 2. While (len (temp) < seedlen) do
+        // 2.1 If ctr_len < blocklen
+        // 2.1.1 inc = (rightmost (V, ctr_len) + 1) mod 2^ctr_len.
+        // 2.1.2 V = leftmost (V, blocklen-ctr_len) || inc.
+        // Else V = (V+1) mod 2^blocklen.
+        // 2.2 output_block = Block_Encrypt (Key, V).
+        // 2.3 temp = temp || output_block.
+        Block_Encrypt_counters(working_state, temp, 0, temp.length);
 
         // 3. temp = leftmost (temp, seedlen).
 
         // 4 temp = temp ⊕ provided_data.
+        if (provided_data != null)
+            BitArray.xor(temp, 0, provided_data, 0, temp.length);
 
         // 5. Key = leftmost (temp, keylen).
+        System.arraycopy(temp, 0, working_state.Key, 0, 32);
 
         // 6. V = rightmost (temp, blocklen).
+        System.arraycopy(temp, 32, working_state.V, 0, 16);
+        Arrays.fill(temp, (byte) 0);
 
         // 7. Return (Key, V).
-        return new Tuple2<BitSet, BitSet>(Key, V);
+        rekey(working_state);
+    }
+
+    /**
+     * Fills <code>length</code> bytes of <code>output</code> at
+     * <code>offset</code> with Block_Encrypt (Key, V) of successive values of V,
+     * incrementing V before each block as the CTR_DRBG loops do.
+     *
+     * NOTE a. Rather than one Block_Encrypt per block the counter values are laid
+     * out first and encrypted by a single cipher call, which lets the JDK pipeline
+     * several AES blocks at once. The ctr_len wrap is honoured because each value is
+     * produced by <code>BitArray.increment</code>. Whole blocks are encrypted straight into
+     * the output and only a trailing partial block goes through
+     * <code>output_block</code>.
+     *
+     * @param working_state
+     * @param output
+     * @param offset
+     * @param length
+     */
+    private void Block_Encrypt_counters(WorkingState working_state, byte[] output, int offset, int length) {
+
+        int blocks = (length + 15) >>> 4;
+        int whole = length & ~15;
+
+        byte[] counter_blocks = working_state.counter_blocks;
+        if (counter_blocks.length < blocks << 4)
+            counter_blocks = working_state.counter_blocks = new byte[blocks << 4];
+
+        byte[] V = working_state.V;
+        for (int i = 0; i < blocks << 4; i += 16) {
+            BitArray.increment(V, ctr_len);
+            System.arraycopy(V, 0, counter_blocks, i, 16);
+        }
+
+        try {
+            if (whole != 0)
+                working_state.cipher.update(counter_blocks, 0, whole, output, offset);
+            if (whole != length) {
+                working_state.cipher.update(counter_blocks, whole, 16, working_state.output_block, 0);
+                System.arraycopy(working_state.output_block, 0, output, offset + whole, length - whole);
+                Arrays.fill(working_state.output_block, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Block_Encrypt failed", e);
+        }
+    }
+
+    /**
+     * Keys the working state's cipher with its current <code>Key</code>. This is
+     * the only place the key schedule is expanded.
+     *
+     * @param working_state
+     */
+    private void rekey(WorkingState working_state) {
+        try {
+            working_state.cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(working_state.Key, "AES"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to key AES", e);
+        }
+    }
+
+    /**
+     * Computes <code>input ⊕ (data || 0^(seedlen - len (data)))</code> into
+     * <code>seed_material</code>. A null input is taken to be 0^seedlen, a null or
+     * empty data is all zeros. The remaining bytes of data are read in place
+     * without moving its position.
+     *
+     * @param seed_material
+     * @param input
+     * @param data
+     * @return
+     */
+    private byte[] seed_material(byte[] seed_material, byte[] input, ByteBuffer data) {
+
+        Arrays.fill(seed_material, (byte) 0);
+        if (input != null)
+            System.arraycopy(input, 0, seed_material, 0, Math.min(input.length, seed_material.length));
+        if (data != null) {
+            int position = data.position();
+            for (int i = 0; i < Math.min(data.remaining(), seed_material.length); i++)
+                seed_material[i] ^= data.get(position + i);
+        }
+        return seed_material;
     }
 }
@@ -0,0 +1,537 @@
+package io.kiwimec.nist.drbg;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.kiwimec.nist.util.BitArray;
+import io.kiwimec.nist.util.Status;
+
+public class AesCtrDf extends Algorithm {
+
+    /**
+     * The AES key sizes offered, with their keylen and seedlen from Table 3 of
+     * 10.2.1.
+     */
+    public enum Aes {
+        AES_128(128, 256),
+        AES_192(192, 320),
+        AES_256(256, 384);
+
+        final int keylen;
+        final int seedlen;
+
+        Aes(int keylen, int seedlen) {
+            this.keylen = keylen;
+            this.seedlen = seedlen;
+        }
+    }
+
+    // The fixed Block_Cipher_df key, leftmost (0x00010203...1D1E1F, keylen).
+    private static final byte[] DF_KEY = {
+            0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B, 0x0C, 0x0D, 0x0E, 0x0F,
+            0x10, 0x11, 0x12, 0x13, 0x14, 0x15, 0x16, 0x17, 0x18, 0x19, 0x1A, 0x1B, 0x1C, 0x1D, 0x1E, 0x1F };
+
+    // ----- Algorithm configuration.
+
+    private final Aes aes;
+
+    // Input and output block length in bytes. Also inlen and outlen.
+    private final int blocklen = 16;
+
+    // Counter field length, the whole block.
+    private final int ctr_len = 128;
+
+    // Key length in bytes.
+    private final int keylen;
+
+    // Seed length in bytes.
+    private final int seedlen;
+
+    // leftmost (0x00010203...1D1E1F, keylen), expanded into every working state
+    // once.
+    private final SecretKeySpec df_key;
+
+    // Required minimum entropy for instantiate and reseed, keylen. See
+    // <code>State.security_strength</code>.
+
+    // Minimum entropy input length, security_strength. Ref.
+    // <code>Algorithm.min_length</code>.
+
+    // Maximum entropy input length, personalization string length and
+    // additional_input length (Using a derivation function), 2^35 bits. Capped at
+    // Integer.MAX_VALUE. Ref. <code>Algorithm.max_length</code>,
+    // <code>Algorithm.max_personalization_string_length</code> and
+    // <code>Algorithm.max_additional_input_length</code>.
+
+    // Maximum number of bits per request, min((2^ctr_len - 4) × blocklen, 2^19) =
+    // 2^19. Ref. <code>Algorithm.max_number_of_bits_per_request</code>.
+
+    // Maximum number of requests between reseeds (2^48). Ref.
+    // <code>Algorithm.reseed_interval</code>.
+
+    // ----- Working state.
+
+    /**
+     * The CTR_DRBG working state. As for <code>Aes256CtrNoDf</code> the cipher is
+     * keyed with <code>Key</code> and only re-keyed by
+     * <code>CTR_DRBG_Update</code>.
+     *
+     * The derivation function keeps two more ciphers. <code>bcc_cipher</code> is
+     * keyed with the fixed df key when the state is created and never again, so
+     * BCC never expands a key schedule. <code>df_cipher</code> is keyed with the K
+     * derived by each Block_Cipher_df call.
+     */
+    static final class WorkingState extends State {
+
+        final byte[] V = new byte[16];
+        final byte[] Key;
+
+        // Keyed Block_Encrypt primitive for Key.
+        final Cipher cipher;
+
+        // Block_Encrypt primitives for the derivation function.
+        final Cipher bcc_cipher;
+        final Cipher df_cipher;
+
+        // Scratch space for CTR_DRBG_Update, Block_Cipher_df and the trailing
+        // partial output block, kept here so generation does not allocate per
+        // block.
+        final byte[] temp;
+        final byte[] seed_material;
+        final byte[] output_block = new byte[16];
+        final byte[] chaining_values;
+        final byte[] input_blocks;
+
+        // The derivation function's S, grown on demand to the longest input seen.
+        byte[] S = new byte[64];
+
+        // Successive values of V laid out back to back so a whole request is
+        // encrypted by a single cipher call. Grown on demand up to
+        // max_number_of_bits_per_request.
+        byte[] counter_blocks = new byte[48];
+
+        WorkingState(Aes aes, SecretKeySpec df_key) {
+            Key = new byte[aes.keylen >>> 3];
+            // Rounded up to whole blocks, seedlen is 2.5 blocks for AES-192.
+            temp = new byte[((aes.seedlen >>> 3) + 15) & ~15];
+            seed_material = new byte[temp.length];
+            chaining_values = new byte[temp.length];
+            input_blocks = new byte[temp.length];
+            try {
+                cipher = Cipher.getInstance("AES/ECB/NoPadding");
+                bcc_cipher = Cipher.getInstance("AES/ECB/NoPadding");
+                bcc_cipher.init(Cipher.ENCRYPT_MODE, df_key);
+                df_cipher = Cipher.getInstance("AES/ECB/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/ECB/NoPadding is not available", e);
+            }
+        }
+
+        /**
+         * cipher and df_cipher are keyed with the zeroed Key so their key
+         * schedules no longer hold Key or the last df K. bcc_cipher only holds the
+         * fixed df key.
+         */
+        @Override
+        void erase() {
+            super.erase();
+            Arrays.fill(V, (byte) 0);
+            Arrays.fill(Key, (byte) 0);
+            Arrays.fill(temp, (byte) 0);
+            Arrays.fill(seed_material, (byte) 0);
+            Arrays.fill(output_block, (byte) 0);
+            Arrays.fill(chaining_values, (byte) 0);
+            Arrays.fill(input_blocks, (byte) 0);
+            Arrays.fill(S, (byte) 0);
+            Arrays.fill(counter_blocks, (byte) 0);
+            try {
+                SecretKeySpec zero_key = new SecretKeySpec(Key, "AES");
+                cipher.init(Cipher.ENCRYPT_MODE, zero_key);
+                df_cipher.init(Cipher.ENCRYPT_MODE, zero_key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to key AES", e);
+            }
+        }
+    }
+
+    /**
+     * Initialises the configuration for this Algorithm instance.
+     *
+     * @param aes
+     * @param prediction_resistance_flag
+     */
+    public AesCtrDf(Aes aes, boolean prediction_resistance_flag) {
+
+        super(aes.keylen, aes.keylen, Integer.MAX_VALUE, Integer.MAX_VALUE, 1 << 19, Integer.MAX_VALUE, 1L << 48,
+                prediction_resistance_flag);
+
+        this.aes = aes;
+        this.keylen = aes.keylen >>> 3;
+        this.seedlen = aes.seedlen >>> 3;
+        this.df_key = new SecretKeySpec(DF_KEY, 0, keylen, "AES");
+    }
+
+    // ----- Abstract Algorithm implementation.
+
+    @Override
+    public State Instantiate_algorithm(byte[] entropy_input, byte[] nonce, ByteBuffer personalization_string,
+            int security_strength) {
+
+        WorkingState working_state = new WorkingState(aes, df_key);
+        working_state.security_strength = security_strength;
+
+        // 1. seed_material = entropy_input || nonce || personalization_string.
+        // 2. seed_material = Block_Cipher_df (seed_material, seedlen).
+        byte[] seed_material = Block_Cipher_df(working_state, entropy_input, nonce, personalization_string);
+
+        // 3. Key = 0^keylen.
+        // 4. V = 0^blocklen.
+        rekey(working_state);
+
+        // 5. (Key, V) = CTR_DRBG_Update (seed_material, Key, V).
+        CTR_DRBG_Update(seed_material, working_state);
+        Arrays.fill(seed_material, (byte) 0);
+
+        // 6. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 7. Return (V, Key, reseed_counter).
+        return working_state;
+    }
+
+    @Override
+    public State Reseed_algorithm(State internal_state, byte[] entropy_input, ByteBuffer additional_input) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+
+        // 1. seed_material = entropy_input || additional_input.
+        // 2. seed_material = Block_Cipher_df (seed_material, seedlen).
+        byte[] seed_material = Block_Cipher_df(working_state, entropy_input, null, additional_input);
+
+        // 3. (Key, V) = CTR_DRBG_Update (seed_material, Key, V).
+        CTR_DRBG_Update(seed_material, working_state);
+        Arrays.fill(seed_material, (byte) 0);
+
+        // 4. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 5. Return (V, Key, reseed_counter).
+        return working_state;
+    }
+
+    @Override
+    public Status Generate_algorithm(State internal_state, int requested_number_of_bits,
+            ByteBuffer additional_input, byte[] pseudorandom_bits, int offset) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+
+        // 1. If reseed_counter > reseed_interval, then return (Status.RESEED_REQUIRED,
+        // Null, Null).
+        if (working_state.reseed_counter > reseed_interval)
+            return Status.RESEED_REQUIRED;
+
+        // 2. If (additional_input ≠ Null), then
+        // 2.1 additional_input = Block_Cipher_df (additional_input, seedlen).
+        // 2.2 (Key, V) = CTR_DRBG_Update (additional_input, Key, V).
+        // Else additional_input = 0^seedlen.
+        //
+        // NOTE a. A zero additional_input leaves the update xor as a no-op so it is
+        // simply represented by null.
+        byte[] provided_data = null;
+        if (additional_input != null && additional_input.hasRemaining()) {
+            provided_data = Block_Cipher_df(working_state, null, null, additional_input);
+            CTR_DRBG_Update(provided_data, working_state);
+        }
+
+        // 3. temp = Null.
+        int length = (requested_number_of_bits + 7) >>> 3;
+
+        // 4. While (len (temp) < requested_number_of_bits) do:
+        // 4.1 If ctr_len < blocklen
+        // 4.1.1 inc = (rightmost (V, ctr_len) + 1) mod 2^ctr_len.
+        // 4.1.2 V = leftmost (V, blocklen-ctr_len) || inc.
+        // Else V = (V+1) mod 2^blocklen.
+        // 4.2 output_block = Block_Encrypt (Key, V).
+        // 4.3 temp = temp || output_block.
+        Block_Encrypt_counters(working_state, pseudorandom_bits, offset, length);
+
+        // 5. returned_bits = leftmost (temp, requested_number_of_bits).
+        int spare_bits = (length << 3) - requested_number_of_bits;
+        if (spare_bits != 0)
+            pseudorandom_bits[offset + length - 1] &= (byte) (0xFF << spare_bits);
+
+        // Comment: Update for backtracking resistance.
+        // 6. (Key, V) = CTR_DRBG_Update (additional_input, Key, V).
+        CTR_DRBG_Update(provided_data, working_state);
+        if (provided_data != null)
+            Arrays.fill(provided_data, (byte) 0);
+
+        // 7. reseed_counter = reseed_counter + 1.
+        working_state.reseed_counter++;
+
+        // 8. Return (SUCCESS, returned_bits, V, Key, reseed_counter).
+        return Status.SUCCESS;
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Updates the internal state of the CTR_DRBG using the provided_data. The Key
+     * and V of the working state are replaced in place and the cipher is re-keyed.
+     * A null provided_data is taken to be 0^seedlen.
+     *
+     * @param provided_data
+     * @param working_state
+     */
+    private void CTR_DRBG_Update(byte[] provided_data, WorkingState working_state) {
+
+        byte[] temp = working_state.temp;
+
+        // 1. temp = Null.
+        // 2. While (len (temp) < seedlen) do
+        // 2.1 If ctr_len < blocklen
+        // 2.1.1 inc = (rightmost (V, ctr_len) + 1) mod 2^ctr_len.
+        // 2.1.2 V = leftmost (V, blocklen-ctr_len) || inc.
+        // Else V = (V+1) mod 2^blocklen.
+        // 2.2 output_block = Block_Encrypt (Key, V).
+        // 2.3 temp = temp || output_block.
+        Block_Encrypt_counters(working_state, temp, 0, seedlen);
+
+        // 3. temp = leftmost (temp, seedlen).
+
+        // 4 temp = temp ⊕ provided_data.
+        if (provided_data != null)
+            BitArray.xor(temp, 0, provided_data, 0, seedlen);
+
+        // 5. Key = leftmost (temp, keylen).
+        System.arraycopy(temp, 0, working_state.Key, 0, keylen);
+
+        // 6. V = rightmost (temp, blocklen).
+        System.arraycopy(temp, keylen, working_state.V, 0, blocklen);
+        Arrays.fill(temp, (byte) 0);
+
+        // 7. Return (Key, V).
+        rekey(working_state);
+    }
+
+    /**
+     * The block cipher derivation function over the input_string <code>a ||
+     * b || c</code>, any of which may be null, returning seedlen bits in the
+     * working state's <code>seed_material</code>. The remaining bytes of
+     * <code>c</code> are read in place without moving its position.
+     *
+     * @param working_state
+     * @param a
+     * @param b
+     * @param c
+     * @return
+     */
+    private byte[] Block_Cipher_df(WorkingState working_state, byte[] a, byte[] b, ByteBuffer c) {
+
+        int a_length = a == null ? 0 : a.length;
+        int b_length = b == null ? 0 : b.length;
+        int c_length = c == null ? 0 : c.remaining();
+
+        // 1. If (number_of_bits_to_return > max_number_of_bits), then return
+        // ERROR_FLAG.
+        //
+        // Comment: Always seedlen, at most 384 of the allowed 512 bits.
+
+        // 2. L = len (input_string)/8.
+        // 3. N = number_of_bits_to_return/8.
+        // Comment: L is the bitstring representation of the integer resulting from
+        // len (input_string)/8. L shall be represented as a 32-bit integer.
+        // Comment: N is the bitstring representation of the integer resulting from
+        // number_of_bits_to_return/8. N shall be represented as a 32-bit integer.
+        long L = (long) a_length + b_length + c_length;
+        if (L > Integer.MAX_VALUE - 2 * blocklen)
+            throw new IllegalArgumentException("input_string is too long");
+
+        // 4. S = L || N || input_string || 0x80.
+        // 5. While (len (S) mod outlen) ≠ 0, do
+        // S = S || 0x00.
+        int S_length = (8 + (int) L + 1 + blocklen - 1) & -blocklen;
+        byte[] S = working_state.S;
+        if (S.length < S_length)
+            S = working_state.S = new byte[S_length];
+        putInt(S, 0, (int) L);
+        putInt(S, 4, seedlen);
+        int position = 8;
+        if (a != null) {
+            System.arraycopy(a, 0, S, position, a_length);
+            position += a_length;
+        }
+        if (b != null) {
+            System.arraycopy(b, 0, S, position, b_length);
+            position += b_length;
+        }
+        if (c != null) {
+            if (c.hasArray())
+                System.arraycopy(c.array(), c.arrayOffset() + c.position(), S, position, c_length);
+            else
+                for (int i = 0; i < c_length; i++)
+                    S[position + i] = c.get(c.position() + i);
+            position += c_length;
+        }
+        S[position++] = (byte) 0x80;
+        Arrays.fill(S, position, S_length, (byte) 0);
+
+        // 6. temp = Null.
+        // 7. i = 0.
+        // Comment: i shall be represented as a 32-bit integer, i.e., len (i) = 32.
+        // 8. K = leftmost (0x00010203...1D1E1F, keylen).
+        // 9. While len (temp) < keylen + outlen, do
+        // 9.1 IV = i || 0^(outlen - len (i)).
+        // 9.2 temp = temp || BCC (K, (IV || S)).
+        // 9.3 i = i + 1.
+        byte[] temp = working_state.temp;
+        BCC(working_state, S, S_length, temp);
+        Arrays.fill(S, 0, S_length, (byte) 0);
+
+        // 10. K = leftmost (temp, keylen).
+        // 11. X = select (temp, keylen+1, keylen+outlen).
+        try {
+            working_state.df_cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(temp, 0, keylen, "AES"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to key AES", e);
+        }
+
+        // 12. temp = Null.
+        // 13. While len (temp) < number_of_bits_to_return, do
+        // 13.1 X = Block_Encrypt (K, X).
+        // 13.2 temp = temp || X.
+        // 14. requested_bits = leftmost (temp, number_of_bits_to_return).
+        byte[] requested_bits = working_state.seed_material;
+        try {
+            working_state.df_cipher.update(temp, keylen, blocklen, requested_bits, 0);
+            for (int i = blocklen; i < seedlen; i += blocklen)
+                working_state.df_cipher.update(requested_bits, i - blocklen, blocklen, requested_bits, i);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Block_Encrypt failed", e);
+        }
+        Arrays.fill(temp, (byte) 0);
+
+        // 15. Return (SUCCESS, requested_bits).
+        return requested_bits;
+    }
+
+    /**
+     * Computes BCC (K, (IV || S)) for every IV the derivation function needs,
+     * writing the leftmost keylen + outlen bits of the chained output blocks into
+     * <code>output</code>.
+     *
+     * NOTE a. The BCC chains for the different values of i share S and differ
+     * only in their first block, so they are run in lockstep: for each data block
+     * the input blocks of all chains are encrypted by a single call on the
+     * pre-keyed <code>bcc_cipher</code>.
+     *
+     * @param working_state
+     * @param S
+     * @param S_length
+     * @param output
+     */
+    private void BCC(WorkingState working_state, byte[] S, int S_length, byte[] output) {
+
+        byte[] chaining_values = working_state.chaining_values;
+        byte[] input_blocks = working_state.input_blocks;
+        int chains = (seedlen + blocklen - 1) / blocklen;
+        int length = chains * blocklen;
+
+        try {
+            // 1. chaining_value = 0^outlen.
+            // 2. n = len (data)/outlen.
+            // 3. Starting with the leftmost bits of data, split data into n blocks of
+            // outlen bits each, forming block_1 to block_n.
+            // 4. For i = 1 to n do
+            // 4.1 input_block = chaining_value ⊕ block_i.
+            // 4.2 chaining_value = Block_Encrypt (Key, input_block).
+            //
+            // Comment: block_1 is the IV, so the first input_block is the IV itself.
+            Arrays.fill(input_blocks, (byte) 0);
+            for (int i = 0; i < chains; i++)
+                putInt(input_blocks, i * blocklen, i);
+            working_state.bcc_cipher.update(input_blocks, 0, length, chaining_values, 0);
+
+            for (int block = 0; block < S_length; block += blocklen) {
+                for (int i = 0; i < length; i++)
+                    input_blocks[i] = (byte) (chaining_values[i] ^ S[block + (i & (blocklen - 1))]);
+                working_state.bcc_cipher.update(input_blocks, 0, length, chaining_values, 0);
+            }
+
+            // 5. output_block = chaining_value.
+            // 6. Return (output_block).
+            System.arraycopy(chaining_values, 0, output, 0, seedlen);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Block_Encrypt failed", e);
+        } finally {
+            Arrays.fill(chaining_values, (byte) 0);
+            Arrays.fill(input_blocks, (byte) 0);
+        }
+    }
+
+    /**
+     * Fills <code>length</code> bytes of <code>output</code> at
+     * <code>offset</code> with Block_Encrypt (Key, V) of successive values of V,
+     * incrementing V before each block. See
+     * <code>Aes256CtrNoDf.Block_Encrypt_counters</code>.
+     *
+     * @param working_state
+     * @param output
+     * @param offset
+     * @param length
+     */
+    private void Block_Encrypt_counters(WorkingState working_state, byte[] output, int offset, int length) {
+
+        int blocks = (length + 15) >>> 4;
+        int whole = length & ~15;
+
+        byte[] counter_blocks = working_state.counter_blocks;
+        if (counter_blocks.length < blocks << 4)
+            counter_blocks = working_state.counter_blocks = new byte[blocks << 4];
+
+        byte[] V = working_state.V;
+        for (int i = 0; i < blocks << 4; i += 16) {
+            BitArray.increment(V, ctr_len);
+            System.arraycopy(V, 0, counter_blocks, i, 16);
+        }
+
+        try {
+            if (whole != 0)
+                working_state.cipher.update(counter_blocks, 0, whole, output, offset);
+            if (whole != length) {
+                working_state.cipher.update(counter_blocks, whole, 16, working_state.output_block, 0);
+                System.arraycopy(working_state.output_block, 0, output, offset + whole, length - whole);
+                Arrays.fill(working_state.output_block, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Block_Encrypt failed", e);
+        }
+    }
+
+    /**
+     * Keys the working state's cipher with its current <code>Key</code>.
+     *
+     * @param working_state
+     */
+    private void rekey(WorkingState working_state) {
+        try {
+            working_state.cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(working_state.Key, "AES"));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to key AES", e);
+        }
+    }
+
+    /**
+     * Writes <code>value</code> as a 32-bit big-endian integer.
+     */
+    private static void putInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+}
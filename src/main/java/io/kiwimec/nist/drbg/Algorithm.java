@@ -1,5 +1,8 @@
 package io.kiwimec.nist.drbg;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import io.kiwimec.nist.util.Status;
 import io.kiwimec.nist.util.Tuple3;
 
@@ -7,24 +10,36 @@ public abstract class Algorithm {
 
     // These are determined by the algorithm design and implementation and set by
     // the implementation constructor. The package scope is appropriate here for the
-    // consuming and derivative class access.
+    // consuming and derivative class access. Lengths are in bits, as in the
+    // standard.
+    //
+    // The personalization_string and additional_input are the remaining bytes of
+    // a ByteBuffer, so a slice of a larger buffer can be passed without copying.
+    // Implementations read them in place and leave the position alone. A null
+    // buffer is the Null string.
     final int highest_supported_security_strength;
+    final int min_length;
+    final int max_length;
     final int max_additional_input_length;
     final int max_number_of_bits_per_request;
     final int max_personalization_string_length;
+    final long reseed_interval;
     final boolean prediction_resistance_flag;
 
     /**
      * The algorithm is initialised by the specific implementation that extends this
      * class.
      */
-    public Algorithm(int highest_supported_security_strength, int max_additional_input_length,
-            int max_number_of_bits_per_request, int max_personalization_string_length,
-            boolean prediction_resistance_flag) {
+    public Algorithm(int highest_supported_security_strength, int min_length, int max_length,
+            int max_additional_input_length, int max_number_of_bits_per_request,
+            int max_personalization_string_length, long reseed_interval, boolean prediction_resistance_flag) {
 
         this.highest_supported_security_strength = highest_supported_security_strength;
+        this.min_length = min_length;
+        this.max_length = max_length;
         this.max_number_of_bits_per_request = max_number_of_bits_per_request;
         this.max_personalization_string_length = max_personalization_string_length;
+        this.reseed_interval = reseed_interval;
         this.prediction_resistance_flag = prediction_resistance_flag;
         this.max_additional_input_length = max_additional_input_length;
     }
@@ -38,8 +53,8 @@ public abstract class Algorithm {
      * @param security_strength
      * @return
      */
-    public abstract State Instantiate_algorithm(byte[] entropy_input, String nonce,
-            String personalization_string, int security_strength);
+    public abstract State Instantiate_algorithm(byte[] entropy_input, byte[] nonce,
+            ByteBuffer personalization_string, int security_strength);
 
     /**
      * Reinitises the internal working state of the algorithm, if the algorithm
@@ -51,7 +66,7 @@ public abstract class Algorithm {
      * @return
      */
     public abstract State Reseed_algorithm(
-            State internal_state, byte[] entropy_input, String additional_input);
+            State internal_state, byte[] entropy_input, ByteBuffer additional_input);
 
     /**
      * Requests <code>requested_number_of_bits</code> of entropy from the algorithm.
@@ -63,6 +78,68 @@ public abstract class Algorithm {
      * @param additional_input
      * @return
      */
-    public abstract Tuple3<Status, byte[], State> Generate_algorithm(State working_state,
-            int requested_number_of_bits, String additional_input);
-}
\ No newline at end of file
+    public Tuple3<Status, byte[], State> Generate_algorithm(State working_state,
+            int requested_number_of_bits, ByteBuffer additional_input) {
+
+        byte[] pseudorandom_bits = new byte[(requested_number_of_bits + 7) >>> 3];
+        Status status = Generate_algorithm(working_state, requested_number_of_bits, additional_input,
+                pseudorandom_bits, 0);
+        if (status != Status.SUCCESS)
+            return new Tuple3<Status, byte[], State>(status, null, null);
+        return new Tuple3<Status, byte[], State>(status, pseudorandom_bits, working_state);
+    }
+
+    /**
+     * Requests <code>requested_number_of_bits</code> of entropy from the algorithm
+     * written into <code>pseudorandom_bits</code> starting at <code>offset</code>.
+     * The working state is updated in place. If the algorithm requires a reseed
+     * <code>Status.RESEED_REQUIRED</code> is returned and nothing is written.
+     * 
+     * @param working_state
+     * @param requested_number_of_bits
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @param offset
+     * @return
+     */
+    public abstract Status Generate_algorithm(State working_state, int requested_number_of_bits,
+            ByteBuffer additional_input, byte[] pseudorandom_bits, int offset);
+
+    /**
+     * Requests <code>requested_number_of_bits</code> of entropy from the algorithm
+     * written into <code>pseudorandom_bits</code> at its position, which is
+     * advanced past the written bytes on success. The working state is updated in
+     * place. Buffers without a backing array are filled through a staging array
+     * kept in the working state.
+     * 
+     * @param working_state
+     * @param requested_number_of_bits
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @return
+     */
+    public Status Generate_algorithm(State working_state, int requested_number_of_bits,
+            ByteBuffer additional_input, ByteBuffer pseudorandom_bits) {
+
+        int length = (requested_number_of_bits + 7) >>> 3;
+        Status status;
+
+        if (pseudorandom_bits.hasArray()) {
+            status = Generate_algorithm(working_state, requested_number_of_bits, additional_input,
+                    pseudorandom_bits.array(), pseudorandom_bits.arrayOffset() + pseudorandom_bits.position());
+            if (status == Status.SUCCESS)
+                pseudorandom_bits.position(pseudorandom_bits.position() + length);
+            return status;
+        }
+
+        if (working_state.returned_bits == null || working_state.returned_bits.length < length)
+            working_state.returned_bits = new byte[(max_number_of_bits_per_request + 7) >>> 3];
+
+        status = Generate_algorithm(working_state, requested_number_of_bits, additional_input,
+                working_state.returned_bits, 0);
+        if (status == Status.SUCCESS)
+            pseudorandom_bits.put(working_state.returned_bits, 0, length);
+        Arrays.fill(working_state.returned_bits, 0, length, (byte) 0);
+        return status;
+    }
+}
@@ -0,0 +1,356 @@
+package io.kiwimec.nist.drbg;
+
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import io.kiwimec.nist.util.Status;
+
+/**
+ * Typed values drawn from one instantiation of a <code>Mechanism</code>. Each
+ * thread keeps a block of output, 4 KiB by default, filled by a single
+ * Generate_function call, and ints, longs, bounded ranges, doubles and short
+ * byte strings are cut from it, so the cost of the call and its state lock is
+ * shared by hundreds of values. Every byte is erased from the block as it is
+ * handed out and <code>clear()</code> erases whatever the calling thread has
+ * left.
+ *
+ * It extends <code>Random</code> so it can be passed to
+ * <code>Collections.shuffle</code> and the like. The Random seed is not used,
+ * <code>setSeed</code> mixes the seed into the instantiation as additional
+ * input instead. It is not serializable, the instantiation it draws from
+ * lives in the mechanism and cannot travel with it.
+ *
+ * Prediction resistance is not offered. A block is generated ahead of the
+ * values it serves, which is the opposite of what prediction resistance asks
+ * for, so callers needing it should call the Mechanism directly.
+ *
+ * A failed Generate_function call throws an IllegalStateException.
+ */
+public final class DrbgRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int DEFAULT_BLOCK_LENGTH = 4096;
+
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN);
+
+    private final transient Mechanism mechanism;
+    private final int state_handle;
+    private final int requested_security_strength;
+    private final int block_length;
+    private final int max_bytes_per_request;
+
+    private final transient ThreadLocal<Block> blocks;
+
+    /**
+     * The output of one Generate_function call, consumed from
+     * <code>position</code> to the end.
+     */
+    private static final class Block {
+
+        final byte[] bytes;
+        int position;
+
+        Block(int length) {
+            bytes = new byte[length];
+            position = length;
+        }
+    }
+
+    /**
+     * @param mechanism
+     * @param state_handle                an instantiation of
+     *                                    <code>mechanism</code>.
+     * @param requested_security_strength
+     */
+    public DrbgRandom(Mechanism mechanism, int state_handle, int requested_security_strength) {
+
+        this(mechanism, state_handle, requested_security_strength, DEFAULT_BLOCK_LENGTH);
+    }
+
+    /**
+     * @param mechanism
+     * @param state_handle                an instantiation of
+     *                                    <code>mechanism</code>.
+     * @param requested_security_strength
+     * @param block_length                bytes per thread block, at least 8 and
+     *                                    at most max_number_of_bits_per_request.
+     */
+    public DrbgRandom(Mechanism mechanism, int state_handle, int requested_security_strength,
+            int block_length) {
+
+        int max_bytes_per_request = mechanism.getMaxNumberOfBitsPerRequest() >>> 3;
+        if (block_length < 8 || block_length > max_bytes_per_request)
+            throw new IllegalArgumentException("Block length must be from 8 to " + max_bytes_per_request);
+
+        this.mechanism = mechanism;
+        this.state_handle = state_handle;
+        this.requested_security_strength = requested_security_strength;
+        this.block_length = block_length;
+        this.max_bytes_per_request = max_bytes_per_request;
+        this.blocks = ThreadLocal.withInitial(() -> new Block(block_length));
+    }
+
+    @Override
+    public int nextInt() {
+
+        Block block = take(4);
+        int value = (int) INTS.get(block.bytes, block.position);
+        INTS.set(block.bytes, block.position, 0);
+        block.position += 4;
+        return value;
+    }
+
+    /**
+     * A uniform int in <code>[0, bound)</code>, without modulo bias.
+     *
+     * Lemire's multiply and shift, the product's low half is only compared
+     * against the rejection threshold, and the division that computes it, in
+     * the rare case that it is needed.
+     */
+    @Override
+    public int nextInt(int bound) {
+
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+
+        long product = (nextInt() & 0xFFFFFFFFL) * bound;
+        if ((int) product + Integer.MIN_VALUE < bound + Integer.MIN_VALUE) {
+            int threshold = Integer.remainderUnsigned(-bound, bound);
+            while ((int) product + Integer.MIN_VALUE < threshold + Integer.MIN_VALUE)
+                product = (nextInt() & 0xFFFFFFFFL) * bound;
+        }
+        return (int) (product >>> 32);
+    }
+
+    /**
+     * A uniform int in <code>[origin, bound)</code>, without modulo bias.
+     */
+    public int nextInt(int origin, int bound) {
+
+        if (origin >= bound)
+            throw new IllegalArgumentException("bound must be greater than origin");
+
+        int range = bound - origin;
+        if (range > 0)
+            return origin + nextInt(range);
+
+        // The range does not fit an int, draw until the value lands inside it.
+        int value;
+        do {
+            value = nextInt();
+        } while (value < origin || value >= bound);
+        return value;
+    }
+
+    @Override
+    public long nextLong() {
+
+        Block block = take(8);
+        long value = (long) LONGS.get(block.bytes, block.position);
+        LONGS.set(block.bytes, block.position, 0L);
+        block.position += 8;
+        return value;
+    }
+
+    /**
+     * A uniform long in <code>[0, bound)</code>, without modulo bias. Draws whose
+     * 63-bit value falls in the last partial multiple of the bound are rejected.
+     */
+    public long nextLong(long bound) {
+
+        if (bound <= 0)
+            throw new IllegalArgumentException("bound must be positive");
+
+        long mask = bound - 1;
+        if ((bound & mask) == 0)
+            return nextLong() & mask;
+
+        long value = nextLong() >>> 1;
+        for (long u = value; u - (value = u % bound) + mask < 0; u = nextLong() >>> 1)
+            ;
+        return value;
+    }
+
+    /**
+     * A uniform long in <code>[origin, bound)</code>, without modulo bias.
+     */
+    public long nextLong(long origin, long bound) {
+
+        if (origin >= bound)
+            throw new IllegalArgumentException("bound must be greater than origin");
+
+        long range = bound - origin;
+        if (range > 0)
+            return origin + nextLong(range);
+
+        long value;
+        do {
+            value = nextLong();
+        } while (value < origin || value >= bound);
+        return value;
+    }
+
+    /**
+     * A uniform double in <code>[0, 1)</code> from 53 random bits.
+     */
+    @Override
+    public double nextDouble() {
+
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public float nextFloat() {
+
+        return (nextInt() >>> 8) * 0x1.0p-24f;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+
+        Block block = take(1);
+        boolean value = (block.bytes[block.position] & 1) != 0;
+        block.bytes[block.position++] = 0;
+        return value;
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+
+        nextBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Fills <code>length</code> bytes from <code>offset</code>. What is left of
+     * the thread's block is used first. A request of a block or more is then
+     * generated straight into <code>bytes</code> and only a short tail comes
+     * from a new block.
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     */
+    public void nextBytes(byte[] bytes, int offset, int length) {
+
+        if (offset < 0 || length < 0 || length > bytes.length - offset)
+            throw new IndexOutOfBoundsException();
+
+        Block block = blocks.get();
+        int count = Math.min(length, block_length - block.position);
+        drain(block, bytes, offset, count);
+        offset += count;
+        length -= count;
+
+        while (length >= block_length) {
+            int chunk = Math.min(max_bytes_per_request, length);
+            check(mechanism.Generate_function(state_handle, chunk << 3, requested_security_strength, false, null,
+                    bytes, offset));
+            offset += chunk;
+            length -= chunk;
+        }
+
+        if (length > 0) {
+            fill(block);
+            drain(block, bytes, offset, length);
+        }
+    }
+
+    /**
+     * Mixes <code>seed</code> into the instantiation as additional_input and
+     * erases the calling thread's block, so the values that follow depend on it.
+     * Other threads finish their blocks first. The seed adds to the
+     * instantiation's entropy, it never replaces it.
+     */
+    @Override
+    public void setSeed(long seed) {
+
+        // Random's constructor calls this before the fields are assigned.
+        if (mechanism == null)
+            return;
+
+        ByteBuffer additional_input = ByteBuffer.allocate(8).putLong(0, seed);
+        check(mechanism.Generate_function(state_handle, 0, requested_security_strength, false,
+                additional_input, new byte[0], 0));
+        clear();
+    }
+
+    /**
+     * Erases the calling thread's unused bytes. The next value refills the block.
+     */
+    public void clear() {
+
+        Block block = blocks.get();
+        Arrays.fill(block.bytes, block.position, block_length, (byte) 0);
+        block.position = block_length;
+    }
+
+    /**
+     * Random's own generator is replaced, but its derived methods, for example
+     * <code>nextGaussian</code>, draw through here.
+     */
+    @Override
+    protected int next(int bits) {
+
+        return nextInt() >>> (32 - bits);
+    }
+
+    // ----- Local implementation
+
+    /**
+     * The calling thread's block with at least <code>length</code> unread bytes.
+     * A block with fewer has its tail erased and is refilled.
+     */
+    private Block take(int length) {
+
+        Block block = blocks.get();
+        if (block_length - block.position < length) {
+            Arrays.fill(block.bytes, block.position, block_length, (byte) 0);
+            fill(block);
+        }
+        return block;
+    }
+
+    private void fill(Block block) {
+
+        check(mechanism.Generate_function(state_handle, block_length << 3, requested_security_strength, false,
+                null, block.bytes, 0));
+        block.position = 0;
+    }
+
+    /**
+     * Copies <code>length</code> unread bytes out of the block, erasing them.
+     */
+    private static void drain(Block block, byte[] bytes, int offset, int length) {
+
+        System.arraycopy(block.bytes, block.position, bytes, offset, length);
+        Arrays.fill(block.bytes, block.position, block.position + length, (byte) 0);
+        block.position += length;
+    }
+
+    private static void check(Status status) {
+
+        if (status != Status.SUCCESS)
+            throw new IllegalStateException("Generate_function returned " + status);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws NotSerializableException {
+
+        throw new NotSerializableException(DrbgRandom.class.getName());
+    }
+
+    private void readObject(ObjectInputStream in) throws NotSerializableException {
+
+        throw new NotSerializableException(DrbgRandom.class.getName());
+    }
+}
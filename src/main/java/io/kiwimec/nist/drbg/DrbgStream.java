@@ -0,0 +1,285 @@
+package io.kiwimec.nist.drbg;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import io.kiwimec.nist.util.Status;
+
+/**
+ * A byte stream of pseudorandom bits drawn from one instantiation of a
+ * <code>Mechanism</code>, readable as an <code>InputStream</code> or as a
+ * <code>ReadableByteChannel</code>. Reads of any size are split into
+ * Generate_function calls of at most max_number_of_bits_per_request, the
+ * mechanism reseeding between them whenever the reseed_interval or prediction
+ * resistance requires it.
+ *
+ * The stream ends after <code>length</code> bytes, or never if the length is
+ * negative, so <code>transferTo</code> can write an exact amount into a file,
+ * socket or other channel. Bulk reads write the output straight into the
+ * caller's array or buffer. Only single byte reads are served from an internal
+ * block, and bytes are erased from it as they are handed out.
+ *
+ * A stream is not thread safe, although several streams may share an
+ * instantiation.
+ */
+public final class DrbgStream extends InputStream implements ReadableByteChannel {
+
+    private final Mechanism mechanism;
+    private final int state_handle;
+    private final int requested_security_strength;
+    private final boolean prediction_resistance_request;
+    private final int max_bytes_per_request;
+
+    // Bytes still to be produced, negative for an endless stream.
+    private long remaining;
+    private boolean closed = false;
+
+    // Block for single byte reads and transfers, allocated on first use.
+    private byte[] block = null;
+    private int block_position = 0;
+    private int block_limit = 0;
+
+    /**
+     * An endless stream.
+     *
+     * @param mechanism
+     * @param state_handle
+     * @param requested_security_strength
+     * @param prediction_resistance_request applied to every Generate_function
+     *                                      call.
+     */
+    public DrbgStream(Mechanism mechanism, int state_handle, int requested_security_strength,
+            boolean prediction_resistance_request) {
+
+        this(mechanism, state_handle, requested_security_strength, prediction_resistance_request, -1);
+    }
+
+    /**
+     * @param mechanism
+     * @param state_handle
+     * @param requested_security_strength
+     * @param prediction_resistance_request applied to every Generate_function
+     *                                      call.
+     * @param length                        bytes before the end of the stream,
+     *                                      negative for an endless stream.
+     */
+    public DrbgStream(Mechanism mechanism, int state_handle, int requested_security_strength,
+            boolean prediction_resistance_request, long length) {
+
+        this.mechanism = mechanism;
+        this.state_handle = state_handle;
+        this.requested_security_strength = requested_security_strength;
+        this.prediction_resistance_request = prediction_resistance_request;
+        this.max_bytes_per_request = mechanism.getMaxNumberOfBitsPerRequest() >>> 3;
+        this.remaining = length;
+    }
+
+    // ----- InputStream
+
+    @Override
+    public int read() throws IOException {
+
+        ensureOpen();
+        if (block_position == block_limit && fill() <= 0)
+            return -1;
+
+        int value = block[block_position] & 0xFF;
+        block[block_position++] = 0;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        ensureOpen();
+        if (off < 0 || len < 0 || len > b.length - off)
+            throw new IndexOutOfBoundsException();
+        if (len == 0)
+            return 0;
+
+        int count = drain(b, off, len);
+        int length = (int) limit(len - count);
+        if (count == 0 && length == 0)
+            return -1;
+
+        for (int end = off + count + length, offset = off + count; offset < end;) {
+            int chunk = Math.min(max_bytes_per_request, end - offset);
+            check(mechanism.Generate_function(state_handle, chunk << 3, requested_security_strength,
+                    prediction_resistance_request, null, b, offset));
+            offset += chunk;
+        }
+        consume(length);
+        return count + length;
+    }
+
+    @Override
+    public int available() {
+
+        return block_limit - block_position;
+    }
+
+    @Override
+    public long transferTo(OutputStream out) throws IOException {
+
+        ensureOpen();
+        long transferred = 0;
+
+        // Bytes left in the block by single byte reads come first, they have
+        // already been taken off remaining.
+        int length = block_limit - block_position;
+        if (length == 0)
+            length = fill();
+        while (length > 0) {
+            out.write(block, block_position, length);
+            Arrays.fill(block, block_position, block_limit, (byte) 0);
+            block_position = block_limit;
+            transferred += length;
+            length = fill();
+        }
+        return transferred;
+    }
+
+    // ----- ReadableByteChannel
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+
+        if (closed)
+            throw new ClosedChannelException();
+        if (!dst.hasRemaining())
+            return 0;
+
+        int count = 0;
+        while (block_position < block_limit && dst.hasRemaining()) {
+            dst.put(block[block_position]);
+            block[block_position++] = 0;
+            count++;
+        }
+
+        int length = (int) limit(dst.remaining());
+        if (count == 0 && length == 0)
+            return -1;
+
+        for (int left = length; left > 0;) {
+            int chunk = Math.min(max_bytes_per_request, left);
+            check(mechanism.Generate_function(state_handle, chunk << 3, requested_security_strength,
+                    prediction_resistance_request, null, dst));
+            left -= chunk;
+        }
+        consume(length);
+        return count + length;
+    }
+
+    /**
+     * Writes the rest of the stream to <code>target</code>, one
+     * max_number_of_bits_per_request chunk at a time through a direct buffer.
+     * An endless stream never returns normally.
+     *
+     * @param target
+     * @return the number of bytes written.
+     * @throws IOException
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+
+        ensureOpen();
+        ByteBuffer chunk = ByteBuffer.allocateDirect(max_bytes_per_request);
+        long transferred = 0;
+        try {
+            while (read(chunk.clear()) > 0) {
+                chunk.flip();
+                while (chunk.hasRemaining())
+                    transferred += target.write(chunk);
+            }
+        } finally {
+            chunk.clear();
+            while (chunk.hasRemaining())
+                chunk.put((byte) 0);
+        }
+        return transferred;
+    }
+
+    @Override
+    public boolean isOpen() {
+
+        return !closed;
+    }
+
+    /**
+     * Closes the stream and erases any buffered bytes. The instantiation is left
+     * alone.
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+        if (block != null)
+            Arrays.fill(block, (byte) 0);
+        block_position = block_limit = 0;
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Refills the empty block with up to max_number_of_bits_per_request bits.
+     *
+     * @return the number of bytes now in the block, 0 at the end of the stream.
+     */
+    private int fill() throws IOException {
+
+        int length = (int) limit(max_bytes_per_request);
+        if (length == 0)
+            return 0;
+
+        if (block == null)
+            block = new byte[max_bytes_per_request];
+        check(mechanism.Generate_function(state_handle, length << 3, requested_security_strength,
+                prediction_resistance_request, null, block, 0));
+        consume(length);
+        block_position = 0;
+        block_limit = length;
+        return length;
+    }
+
+    /**
+     * Copies buffered bytes into <code>b</code>, erasing them from the block.
+     */
+    private int drain(byte[] b, int off, int len) {
+
+        int count = Math.min(len, block_limit - block_position);
+        if (count > 0) {
+            System.arraycopy(block, block_position, b, off, count);
+            Arrays.fill(block, block_position, block_position + count, (byte) 0);
+            block_position += count;
+        }
+        return count;
+    }
+
+    private long limit(long length) {
+
+        return remaining < 0 ? length : Math.min(length, remaining);
+    }
+
+    private void consume(long length) {
+
+        if (remaining >= 0)
+            remaining -= length;
+    }
+
+    private void ensureOpen() throws IOException {
+
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    private static void check(Status status) throws IOException {
+
+        if (status != Status.SUCCESS)
+            throw new IOException("Generate_function failed with " + status);
+    }
+}
@@ -0,0 +1,347 @@
+package io.kiwimec.nist.drbg;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import io.kiwimec.nist.util.BitArray;
+import io.kiwimec.nist.util.Status;
+
+public class HashDrbg extends Algorithm {
+
+    /**
+     * The approved hash functions offered, with their outlen and seedlen from
+     * Table 2 of 10.1.
+     */
+    public enum Hash {
+        SHA_256("SHA-256", 256, 440),
+        SHA_512("SHA-512", 512, 888);
+
+        final String algorithm;
+        final int outlen;
+        final int seedlen;
+
+        Hash(String algorithm, int outlen, int seedlen) {
+            this.algorithm = algorithm;
+            this.outlen = outlen;
+            this.seedlen = seedlen;
+        }
+    }
+
+    // ----- Algorithm configuration.
+
+    private final Hash hash;
+
+    // Output block length in bytes (outlen / 8).
+    private final int outlen;
+
+    // Seed length in bytes (seedlen / 8).
+    private final int seedlen;
+
+    // Required minimum entropy for instantiate and reseed. See
+    // <code>State.security_strength</code>.
+
+    // Minimum entropy input length, security_strength. Ref.
+    // <code>Algorithm.min_length</code>.
+
+    // Maximum entropy input length, personalization string length and
+    // additional_input length, 2^35 bits. Capped at Integer.MAX_VALUE. Ref.
+    // <code>Algorithm.max_length</code>,
+    // <code>Algorithm.max_personalization_string_length</code> and
+    // <code>Algorithm.max_additional_input_length</code>.
+
+    // Maximum number of bits per request, 2^19. Ref.
+    // <code>Algorithm.max_number_of_bits_per_request</code>.
+
+    // Maximum number of requests between reseeds, 2^48. Ref.
+    // <code>Algorithm.reseed_interval</code>.
+
+    // ----- Working state.
+
+    /**
+     * The Hash_DRBG working state. V and C are big-endian byte strings of seedlen
+     * bits so they can be hashed directly, and the additions on them are done a
+     * long word at a time. The message digest is reused for every hash the state
+     * needs.
+     */
+    static final class WorkingState extends State {
+
+        final byte[] V;
+        final byte[] C;
+
+        final MessageDigest digest;
+
+        // Scratch space for Hash_df, Hashgen and the step 2 and 4 hashes.
+        final byte[] temp;
+        final byte[] data;
+        final byte[] w;
+
+        WorkingState(Hash hash) {
+            V = new byte[hash.seedlen >>> 3];
+            C = new byte[hash.seedlen >>> 3];
+            temp = new byte[((hash.seedlen + hash.outlen - 1) / hash.outlen) * (hash.outlen >>> 3)];
+            data = new byte[hash.seedlen >>> 3];
+            w = new byte[hash.outlen >>> 3];
+            try {
+                digest = MessageDigest.getInstance(hash.algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(hash.algorithm + " is not available", e);
+            }
+        }
+
+        @Override
+        void erase() {
+            super.erase();
+            Arrays.fill(V, (byte) 0);
+            Arrays.fill(C, (byte) 0);
+            Arrays.fill(temp, (byte) 0);
+            Arrays.fill(data, (byte) 0);
+            Arrays.fill(w, (byte) 0);
+            digest.reset();
+        }
+    }
+
+    /**
+     * Initialises the configuration for this Algorithm instance.
+     *
+     * @param hash
+     * @param prediction_resistance_flag
+     */
+    public HashDrbg(Hash hash, boolean prediction_resistance_flag) {
+
+        super(256, 256, Integer.MAX_VALUE, Integer.MAX_VALUE, 1 << 19, Integer.MAX_VALUE, 1L << 48,
+                prediction_resistance_flag);
+
+        this.hash = hash;
+        this.outlen = hash.outlen >>> 3;
+        this.seedlen = hash.seedlen >>> 3;
+    }
+
+    // ----- Abstract Algorithm implementation.
+
+    @Override
+    public State Instantiate_algorithm(byte[] entropy_input, byte[] nonce, ByteBuffer personalization_string,
+            int security_strength) {
+
+        WorkingState working_state = new WorkingState(hash);
+        working_state.security_strength = security_strength;
+
+        // 1. seed_material = entropy_input || nonce || personalization_string.
+        // 2. seed = Hash_df (seed_material, seedlen).
+        // 3. V = seed.
+        Hash_df(working_state, -1, entropy_input, nonce, personalization_string, working_state.V);
+
+        // 4. C = Hash_df ((0x00 || V), seedlen). Comment: Precede V with a byte of
+        // zeros.
+        Hash_df(working_state, 0x00, working_state.V, null, null, working_state.C);
+
+        // 5. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 6. Return (V, C, reseed_counter).
+        return working_state;
+    }
+
+    @Override
+    public State Reseed_algorithm(State internal_state, byte[] entropy_input, ByteBuffer additional_input) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+
+        // 1. seed_material = 0x01 || V || entropy_input || additional_input.
+        // 2. seed = Hash_df (seed_material, seedlen).
+        // 3. V = seed.
+        Hash_df(working_state, 0x01, working_state.V, entropy_input, additional_input, working_state.V);
+
+        // 4. C = Hash_df ((0x00 || V), seedlen). Comment: Preceed with a byte of all
+        // zeros.
+        Hash_df(working_state, 0x00, working_state.V, null, null, working_state.C);
+
+        // 5. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 6. Return (V, C, reseed_counter).
+        return working_state;
+    }
+
+    @Override
+    public Status Generate_algorithm(State internal_state, int requested_number_of_bits,
+            ByteBuffer additional_input, byte[] pseudorandom_bits, int offset) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+        MessageDigest digest = working_state.digest;
+
+        // 1. If reseed_counter > reseed_interval, then return an indication that a
+        // reseed is required.
+        if (working_state.reseed_counter > reseed_interval)
+            return Status.RESEED_REQUIRED;
+
+        // 2. If (additional_input ≠ Null), then do
+        // 2.1 w = Hash (0x02 || V || additional_input).
+        // 2.2 V = (V + w) mod 2^seedlen.
+        if (additional_input != null && additional_input.hasRemaining()) {
+            digest.update((byte) 0x02);
+            digest.update(working_state.V);
+            update(digest, additional_input);
+            Hash(digest, working_state.w, 0);
+            BitArray.add(working_state.V, working_state.w);
+        }
+
+        // 3. (returned_bits) = Hashgen (requested_number_of_bits, V).
+        Hashgen(working_state, requested_number_of_bits, pseudorandom_bits, offset);
+
+        // 4. H = Hash (0x03 || V).
+        digest.update((byte) 0x03);
+        digest.update(working_state.V);
+        Hash(digest, working_state.w, 0);
+
+        // 5. V = (V + H + C + reseed_counter) mod 2^seedlen.
+        BitArray.add(working_state.V, working_state.w);
+        BitArray.add(working_state.V, working_state.C);
+        BitArray.add(working_state.V, working_state.reseed_counter);
+        Arrays.fill(working_state.w, (byte) 0);
+
+        // 6. reseed_counter = reseed_counter + 1.
+        working_state.reseed_counter++;
+
+        // 7. Return (SUCCESS, returned_bits, V, C, reseed_counter).
+        return Status.SUCCESS;
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Hashgen writing the returned_bits into <code>pseudorandom_bits</code> at
+     * <code>offset</code>.
+     *
+     * @param working_state
+     * @param requested_no_of_bits
+     * @param pseudorandom_bits
+     * @param offset
+     */
+    private void Hashgen(WorkingState working_state, int requested_no_of_bits, byte[] pseudorandom_bits,
+            int offset) {
+
+        MessageDigest digest = working_state.digest;
+        int length = (requested_no_of_bits + 7) >>> 3;
+
+        // 1. m = ceil (requested_no_of_bits / outlen).
+
+        // 2. data = V.
+        byte[] data = working_state.data;
+        System.arraycopy(working_state.V, 0, data, 0, seedlen);
+
+        // 3. W = the Null string.
+        // 4. For i = 1 to m
+        for (int produced = 0; produced < length; produced += outlen) {
+
+            // 4.1 w = Hash (data).
+            // 4.2 W = W || w.
+            digest.update(data);
+            if (length - produced >= outlen) {
+                Hash(digest, pseudorandom_bits, offset + produced);
+            } else {
+                Hash(digest, working_state.w, 0);
+                System.arraycopy(working_state.w, 0, pseudorandom_bits, offset + produced, length - produced);
+            }
+
+            // 4.3 data = (data + 1) mod 2^seedlen.
+            BitArray.add(data, 1);
+        }
+        Arrays.fill(data, (byte) 0);
+
+        // 5. returned_bits = leftmost (W, requested_no_of_bits).
+        int spare_bits = (length << 3) - requested_no_of_bits;
+        if (spare_bits != 0)
+            pseudorandom_bits[offset + length - 1] &= (byte) (0xFF << spare_bits);
+
+        // 6. Return (returned_bits).
+    }
+
+    /**
+     * Hash_df (input_string, seedlen) where the input_string is the concatenation
+     * of an optional leading byte (when <code>prefix</code> is not negative) and
+     * up to three optional strings. The seedlen bits are written to
+     * <code>requested_bits</code>, which may be one of the inputs.
+     *
+     * NOTE a. The counter and no_of_bits_to_return prefix of each hash is only five
+     * bytes, well short of a compression block, so there is no digest state worth
+     * caching for it. It is fed from a constant into the reused digest instead.
+     *
+     * @param working_state
+     * @param prefix
+     * @param a
+     * @param b
+     * @param c
+     * @param requested_bits
+     */
+    private void Hash_df(WorkingState working_state, int prefix, byte[] a, byte[] b, ByteBuffer c,
+            byte[] requested_bits) {
+
+        MessageDigest digest = working_state.digest;
+        byte[] temp = working_state.temp;
+        int no_of_bits_to_return = seedlen << 3;
+
+        // 1. temp = the Null string.
+        // 2. len = ceil (no_of_bits_to_return / outlen).
+        // 3. counter = 0x01.
+        // 4. For i = 1 to len do
+        for (int counter = 1, produced = 0; produced < seedlen; counter++, produced += outlen) {
+
+            // 4.1 temp = temp || Hash (counter || no_of_bits_to_return || input_string).
+            digest.update((byte) counter);
+            digest.update((byte) (no_of_bits_to_return >>> 24));
+            digest.update((byte) (no_of_bits_to_return >>> 16));
+            digest.update((byte) (no_of_bits_to_return >>> 8));
+            digest.update((byte) no_of_bits_to_return);
+            if (prefix >= 0)
+                digest.update((byte) prefix);
+            if (a != null)
+                digest.update(a);
+            if (b != null)
+                digest.update(b);
+            if (c != null)
+                update(digest, c);
+            Hash(digest, temp, produced);
+
+            // 4.2 counter = counter + 1.
+        }
+
+        // 5. requested_bits = leftmost (temp, no_of_bits_to_return).
+        System.arraycopy(temp, 0, requested_bits, 0, seedlen);
+        Arrays.fill(temp, (byte) 0);
+
+        // 6. Return (SUCCESS, requested_bits).
+    }
+
+    /**
+     * Completes the digest into <code>output</code> at <code>offset</code>,
+     * resetting it for the next hash.
+     *
+     * @param digest
+     * @param output
+     * @param offset
+     */
+    private void Hash(MessageDigest digest, byte[] output, int offset) {
+        try {
+            digest.digest(output, offset, outlen);
+        } catch (DigestException e) {
+            throw new IllegalStateException("Hash failed", e);
+        }
+    }
+
+    /**
+     * Feeds the remaining bytes of <code>input</code> to the digest without moving
+     * its position.
+     *
+     * @param digest
+     * @param input
+     */
+    private static void update(MessageDigest digest, ByteBuffer input) {
+        if (input.hasArray())
+            digest.update(input.array(), input.arrayOffset() + input.position(), input.remaining());
+        else
+            digest.update(input.duplicate());
+    }
+}
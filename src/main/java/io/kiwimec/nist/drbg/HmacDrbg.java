@@ -0,0 +1,285 @@
+package io.kiwimec.nist.drbg;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import io.kiwimec.nist.util.Status;
+
+public class HmacDrbg extends Algorithm {
+
+    /**
+     * The approved hash functions offered for HMAC, with their outlen from Table 2
+     * of 10.1.
+     */
+    public enum Hash {
+        SHA_256("HmacSHA256", 256),
+        SHA_512("HmacSHA512", 512);
+
+        final String algorithm;
+        final int outlen;
+
+        Hash(String algorithm, int outlen) {
+            this.algorithm = algorithm;
+            this.outlen = outlen;
+        }
+    }
+
+    // ----- Algorithm configuration.
+
+    private final Hash hash;
+
+    // Output block length in bytes (outlen / 8).
+    private final int outlen;
+
+    // Required minimum entropy for instantiate and reseed. See
+    // <code>State.security_strength</code>.
+
+    // Minimum entropy input length, security_strength. Ref.
+    // <code>Algorithm.min_length</code>.
+
+    // Maximum entropy input length, personalization string length and
+    // additional_input length, 2^35 bits. Capped at Integer.MAX_VALUE. Ref.
+    // <code>Algorithm.max_length</code>,
+    // <code>Algorithm.max_personalization_string_length</code> and
+    // <code>Algorithm.max_additional_input_length</code>.
+
+    // Maximum number of bits per request, 2^19. Ref.
+    // <code>Algorithm.max_number_of_bits_per_request</code>.
+
+    // Maximum number of requests between reseeds, 2^48. Ref.
+    // <code>Algorithm.reseed_interval</code>.
+
+    // ----- Working state.
+
+    /**
+     * The HMAC_DRBG working state. The Mac is kept keyed with <code>Key</code>
+     * between calls and is only re-keyed where HMAC_DRBG_Update actually replaces
+     * Key, so the V chain of a generate reuses the key schedule and pads computed
+     * by the last update.
+     */
+    static final class WorkingState extends State {
+
+        final byte[] V;
+        final byte[] Key;
+
+        // HMAC keyed with Key.
+        final Mac mac;
+
+        WorkingState(Hash hash) {
+            V = new byte[hash.outlen >>> 3];
+            Key = new byte[hash.outlen >>> 3];
+            try {
+                mac = Mac.getInstance(hash.algorithm);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(hash.algorithm + " is not available", e);
+            }
+        }
+
+        /**
+         * The Mac is keyed with the zeroed Key so its pads no longer hold the old
+         * one.
+         */
+        @Override
+        void erase() {
+            super.erase();
+            Arrays.fill(V, (byte) 0);
+            Arrays.fill(Key, (byte) 0);
+            try {
+                mac.init(new SecretKeySpec(Key, mac.getAlgorithm()));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to key " + mac.getAlgorithm(), e);
+            }
+        }
+    }
+
+    /**
+     * Initialises the configuration for this Algorithm instance.
+     *
+     * @param hash
+     * @param prediction_resistance_flag
+     */
+    public HmacDrbg(Hash hash, boolean prediction_resistance_flag) {
+
+        super(256, 256, Integer.MAX_VALUE, Integer.MAX_VALUE, 1 << 19, Integer.MAX_VALUE, 1L << 48,
+                prediction_resistance_flag);
+
+        this.hash = hash;
+        this.outlen = hash.outlen >>> 3;
+    }
+
+    // ----- Abstract Algorithm implementation.
+
+    @Override
+    public State Instantiate_algorithm(byte[] entropy_input, byte[] nonce, ByteBuffer personalization_string,
+            int security_strength) {
+
+        WorkingState working_state = new WorkingState(hash);
+        working_state.security_strength = security_strength;
+
+        // 1. seed_material = entropy_input || nonce || personalization_string.
+
+        // 2. Key = 0x00 00...00. Comment: outlen bits.
+        // 3. V = 0x01 01...01. Comment: outlen bits.
+        Arrays.fill(working_state.V, (byte) 0x01);
+        rekey(working_state);
+
+        // Comment: Update Key and V.
+        // 4. (Key, V) = HMAC_DRBG_Update (seed_material, Key, V).
+        HMAC_DRBG_Update(working_state, entropy_input, nonce, personalization_string);
+
+        // 5. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 6. Return (V, Key, reseed_counter).
+        return working_state;
+    }
+
+    @Override
+    public State Reseed_algorithm(State internal_state, byte[] entropy_input, ByteBuffer additional_input) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+
+        // 1. seed_material = entropy_input || additional_input.
+        // 2. (Key, V) = HMAC_DRBG_Update (seed_material, Key, V).
+        HMAC_DRBG_Update(working_state, entropy_input, null, additional_input);
+
+        // 3. reseed_counter = 1.
+        working_state.reseed_counter = 1;
+
+        // 4. Return (V, Key, reseed_counter).
+        return working_state;
+    }
+
+    @Override
+    public Status Generate_algorithm(State internal_state, int requested_number_of_bits,
+            ByteBuffer additional_input, byte[] pseudorandom_bits, int offset) {
+
+        WorkingState working_state = (WorkingState) internal_state;
+        Mac mac = working_state.mac;
+        byte[] V = working_state.V;
+
+        // 1. If reseed_counter > reseed_interval, then return an indication that a
+        // reseed is required.
+        if (working_state.reseed_counter > reseed_interval)
+            return Status.RESEED_REQUIRED;
+
+        // 2. If additional_input ≠ Null, then (Key, V) = HMAC_DRBG_Update
+        // (additional_input, Key, V).
+        if (additional_input != null && !additional_input.hasRemaining())
+            additional_input = null;
+        if (additional_input != null)
+            HMAC_DRBG_Update(working_state, null, null, additional_input);
+
+        // 3. temp = Null.
+        int length = (requested_number_of_bits + 7) >>> 3;
+
+        // 4. While (len (temp) < requested_number_of_bits) do:
+        // 4.1 V = HMAC (Key, V).
+        // 4.2 temp = temp || V.
+        //
+        // NOTE a. Key does not change in this loop so the keyed Mac is used as is.
+        for (int produced = 0; produced < length; produced += outlen) {
+            HMAC(mac, V, -1, null, null, null, V);
+            System.arraycopy(V, 0, pseudorandom_bits, offset + produced, Math.min(outlen, length - produced));
+        }
+
+        // 5. returned_bits = leftmost (temp, requested_number_of_bits).
+        int spare_bits = (length << 3) - requested_number_of_bits;
+        if (spare_bits != 0)
+            pseudorandom_bits[offset + length - 1] &= (byte) (0xFF << spare_bits);
+
+        // 6. (Key, V) = HMAC_DRBG_Update (additional_input, Key, V).
+        HMAC_DRBG_Update(working_state, null, null, additional_input);
+
+        // 7. reseed_counter = reseed_counter + 1.
+        working_state.reseed_counter++;
+
+        // 8. Return (SUCCESS, returned_bits, Key, V, reseed_counter).
+        return Status.SUCCESS;
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Updates the internal state of the HMAC_DRBG using the provided_data, the
+     * concatenation of the non-null <code>a</code>, <code>b</code> and
+     * <code>c</code>. Key and V are replaced in place and the Mac is left keyed
+     * with the new Key.
+     *
+     * @param working_state
+     * @param a
+     * @param b
+     * @param c
+     */
+    private void HMAC_DRBG_Update(WorkingState working_state, byte[] a, byte[] b, ByteBuffer c) {
+
+        Mac mac = working_state.mac;
+        byte[] V = working_state.V;
+        boolean provided_data = a != null || b != null || (c != null && c.hasRemaining());
+
+        // 1. Key = HMAC (Key, V || 0x00 || provided_data).
+        HMAC(mac, V, 0x00, a, b, c, working_state.Key);
+        rekey(working_state);
+
+        // 2. V = HMAC (Key, V).
+        HMAC(mac, V, -1, null, null, null, V);
+
+        // 3. If (provided_data = Null), then return Key and V.
+        if (!provided_data)
+            return;
+
+        // 4. Key = HMAC (Key, V || 0x01 || provided_data).
+        HMAC(mac, V, 0x01, a, b, c, working_state.Key);
+        rekey(working_state);
+
+        // 5. V = HMAC (Key, V).
+        HMAC(mac, V, -1, null, null, null, V);
+
+        // 6. Return (Key, V).
+    }
+
+    /**
+     * HMAC (Key, x || separator || a || b || c) with the Mac as currently
+     * keyed, written to <code>output</code>. Null inputs and a negative separator
+     * are skipped. The output may be one of the inputs.
+     */
+    private void HMAC(Mac mac, byte[] x, int separator, byte[] a, byte[] b, ByteBuffer c, byte[] output) {
+
+        mac.update(x);
+        if (separator >= 0)
+            mac.update((byte) separator);
+        if (a != null)
+            mac.update(a);
+        if (b != null)
+            mac.update(b);
+        if (c != null) {
+            if (c.hasArray())
+                mac.update(c.array(), c.arrayOffset() + c.position(), c.remaining());
+            else
+                mac.update(c.duplicate());
+        }
+        try {
+            mac.doFinal(output, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC failed", e);
+        }
+    }
+
+    /**
+     * Keys the working state's Mac with its current <code>Key</code>. This is the
+     * only place the HMAC pads are recomputed.
+     *
+     * @param working_state
+     */
+    private void rekey(WorkingState working_state) {
+        try {
+            working_state.mac.init(new SecretKeySpec(working_state.Key, hash.algorithm));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to key " + hash.algorithm, e);
+        }
+    }
+}
@@ -1,34 +1,85 @@
 package io.kiwimec.nist.drbg;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import io.kiwimec.nist.source.Entropy;
 import io.kiwimec.nist.source.Nonce;
 import io.kiwimec.nist.util.Status;
 import io.kiwimec.nist.util.Tuple2;
-import io.kiwimec.nist.util.Tuple3;
 
 public final class Mechanism {
 
+    // The state_handle returned when no internal state could be instantiated. It
+    // never addresses a state.
+    public static final int Invalid = 0;
+
     // Components need to be final to make instantiation unbreakable.
     private final Entropy entropy_source;
     private final Nonce nonce_source;
     private final Algorithm drbg_algorithm;
 
-    // The standard makes the state one or more addressable units. I'm just using
-    // one here. If you want more create more Mechanism's.
-    private State internal_state = null;
+    // The standard makes the state one or more addressable units. Each
+    // instantiation gets its own state in the table, addressed by a compact
+    // state_handle. Lookups are lock-free and each state carries its own lock so
+    // many instantiations can share one set of components.
+    private final StateTable internal_states = new StateTable();
+
+    // Optional background reseeding. When an executor is configured a generate
+    // that leaves a state within reseed_margin requests of the reseed_interval, or
+    // older than reseed_age nanoseconds, queues a reseed on the executor instead
+    // of leaving it to step 7 of a later generate.
+    private final Executor reseed_executor;
+    private final long reseed_margin;
+    private final long reseed_age;
+
+    // Counters of this mechanism, also added to the aggregate over all mechanisms.
+    private final Metrics metrics = new Metrics();
+
+    // Result of the entropy source's start-up test. Kept here because not every
+    // source latches its own failure.
+    private final Status startup_status;
 
     // It is the responsibility of the constructor to correctly configure the type
     // of mechnism with the required combination of sources and algorithm.
     public Mechanism(Entropy entropy_source, Nonce nonce_source,
             Algorithm drbg_algorithm) {
 
+        this(entropy_source, nonce_source, drbg_algorithm, null, 0, 0);
+    }
+
+    /**
+     * Configures a mechanism that reseeds its states in the background. Entropy
+     * is gathered on <code>reseed_executor</code> so generation never waits for
+     * it unless a state actually reaches its reseed_interval or prediction
+     * resistance is requested.
+     * 
+     * @param entropy_source
+     * @param nonce_source
+     * @param drbg_algorithm
+     * @param reseed_executor runs the background reseeds, null to disable them.
+     * @param reseed_margin   requests before the reseed_interval at which a
+     *                        background reseed is queued.
+     * @param reseed_age      nanoseconds after which a background reseed is
+     *                        queued, 0 for no time budget.
+     */
+    public Mechanism(Entropy entropy_source, Nonce nonce_source,
+            Algorithm drbg_algorithm, Executor reseed_executor, long reseed_margin, long reseed_age) {
+
         this.entropy_source = entropy_source;
         this.nonce_source = nonce_source;
         this.drbg_algorithm = drbg_algorithm;
-
-        // TODO: add health check
-
-        this.internal_state = new State();
+        this.reseed_executor = reseed_executor;
+        this.reseed_margin = reseed_margin;
+        this.reseed_age = reseed_age;
+
+        // Start-up health test of the entropy source, SP 800-90B 4.3. While it has
+        // not passed no entropy is taken from the source, so every
+        // Instantiate_function and Reseed_function reports CATASTROPHIC_ERROR_FLAG.
+        this.startup_status = entropy_source.Startup_test();
     }
 
     //
@@ -42,16 +93,30 @@ public final class Mechanism {
      * @param personalization_string
      * @return
      */
-    public final Tuple2<Status, String> Instantiate_function(
+    public final Tuple2<Status, Integer> Instantiate_function(
+            int requested_instantiation_security_strength, boolean prediction_resistance_flag,
+            ByteBuffer personalization_string) {
+
+        Tuple2<Status, Integer> result = Instantiate(requested_instantiation_security_strength,
+                prediction_resistance_flag, personalization_string);
+        if (metrics.status(result.first) == Status.SUCCESS)
+            metrics.instantiated();
+        return result;
+    }
+
+    /**
+     * The instantiate function proper, its status is counted by the caller.
+     */
+    private Tuple2<Status, Integer> Instantiate(
             int requested_instantiation_security_strength, boolean prediction_resistance_flag,
-            String personalization_string) {
+            ByteBuffer personalization_string) {
 
         // Comment: Check the validity of the input parameters.
 
         // 1. If requested_instantiation_security_strength >
         // highest_supported_security_strength, then return (ERROR_FLAG, Invalid).
         if (requested_instantiation_security_strength > drbg_algorithm.highest_supported_security_strength)
-            return new Tuple2<Status, String>(Status.ERROR_FLAG, "Invalid");
+            return new Tuple2<Status, Integer>(Status.ERROR_FLAG, Invalid);
 
         // 2. If prediction_resistance_flag is set, and prediction resistance is not
         // supported, then return (ERROR_FLAG, Invalid).
@@ -60,26 +125,26 @@ public final class Mechanism {
         // that the prediction_resistance_flag set here is an overriding default and is
         // assumed to be stored in the internal state as per p. 27 of the specification.
         if (prediction_resistance_flag && !drbg_algorithm.prediction_resistance_flag)
-            return new Tuple2<Status, String>(Status.ERROR_FLAG, "Invalid");
-        internal_state.prediction_resistance_flag = prediction_resistance_flag;
+            return new Tuple2<Status, Integer>(Status.ERROR_FLAG, Invalid);
 
         // 3. If the length of the personalization_string >
         // max_personalization_string_length,
         // return (ERROR_FLAG, Invalid).
-        if (personalization_string.length() > drbg_algorithm.max_personalization_string_length)
-            return new Tuple2<Status, String>(Status.ERROR_FLAG, "Invalid");
+        if (len(personalization_string) > drbg_algorithm.max_personalization_string_length)
+            return new Tuple2<Status, Integer>(Status.ERROR_FLAG, Invalid);
 
         // 4. Set security_strength to the lowest security strength greater than or
         // equal to requested_instantiation_security_strength from the set {112, 128,
         // 192, 256}.
+        int security_strength;
         if (requested_instantiation_security_strength > 192) {
-            internal_state.security_strength = 256;
+            security_strength = 256;
         } else if (requested_instantiation_security_strength > 128) {
-            internal_state.security_strength = 192;
+            security_strength = 192;
         } else if (requested_instantiation_security_strength > 112) {
-            internal_state.security_strength = 128;
+            security_strength = 128;
         } else {
-            internal_state.security_strength = 112;
+            security_strength = 112;
         }
 
         // 5. Null step. Comment: This null step replaces a step from the original
@@ -87,31 +152,27 @@ public final class Mechanism {
 
         // 6. (status, entropy_input) = Get_entropy_input (security_strength,
         // min_length, max_length, prediction_resistance_request).
-        Tuple2<Status, byte[]> entropy_input = entropy_source.Get_entropy_input(
-                internal_state.security_strength,
-                internal_state.security_strength,
-                internal_state.security_strength,
+        Tuple2<Status, byte[]> entropy_input = Get_entropy_input(security_strength,
                 prediction_resistance_flag);
 
         // 7. If (status ≠ SUCCESS), return (status, Invalid).
         if (entropy_input.first != Status.SUCCESS)
-            return new Tuple2<Status, String>(entropy_input.first, "Invalid");
+            return new Tuple2<Status, Integer>(entropy_input.first, Invalid);
 
         // 8. Obtain a nonce. Comment: This step shall include any appropriate checks on
         // the acceptability of the nonce. See Section 8.6.7.
         //
-        // NOTE a. The prototype for the nonce call is not provided.
-        String nonce = nonce_source.Get_nonce();
+        // NOTE a. The prototype for the nonce call is not provided. Here the nonce
+        // source is given the security_strength so a random nonce can carry
+        // security_strength/2 bits.
+        byte[] nonce = nonce_source.Get_nonce(security_strength);
+        if (nonce == null)
+            return new Tuple2<Status, Integer>(Status.ERROR_FLAG, Invalid);
 
         // 9. initial_working_state = Instantiate_algorithm (entropy_input, nonce,
         // personalization_string, security_strength).
         State initial_working_state = drbg_algorithm.Instantiate_algorithm(entropy_input.second, nonce,
-                personalization_string, internal_state.security_strength);
-
-        // 10. Get a state_handle for a currently empty internal state. If an empty
-        // internal state cannot be found, return (ERROR_FLAG, Invalid).
-        if (initial_working_state.handle == null)
-            return new Tuple2<Status, String>(Status.ERROR_FLAG, "Invalid");
+                personalization_string, security_strength);
 
         // 11. Set the internal state for the new instantiation (e.g., as indicated by
         // state_handle) to the initial values for the internal state (i.e., set the
@@ -119,10 +180,21 @@ public final class Mechanism {
         // any other values required for the working_state (see Section 10), and set the
         // administrative information to the appropriate values (e.g., the values of
         // security_strength and the prediction_resistance_flag).
-        internal_state = initial_working_state;
+        //
+        // NOTE a. Steps 10 and 11 are swapped so the state is complete before it
+        // becomes addressable through its state_handle.
+        initial_working_state.security_strength = security_strength;
+        initial_working_state.prediction_resistance_flag = prediction_resistance_flag;
+        initial_working_state.reseed_time = System.nanoTime();
+
+        // 10. Get a state_handle for a currently empty internal state. If an empty
+        // internal state cannot be found, return (ERROR_FLAG, Invalid).
+        int state_handle = internal_states.add(initial_working_state);
+        if (state_handle == Invalid)
+            return new Tuple2<Status, Integer>(Status.ERROR_FLAG, Invalid);
 
         // 12. Return (SUCCESS, state_handle).
-        return new Tuple2<Status, String>(Status.SUCCESS, internal_state.handle);
+        return new Tuple2<Status, Integer>(Status.SUCCESS, state_handle);
     }
 
     /**
@@ -136,8 +208,18 @@ public final class Mechanism {
      * @param additional_input
      * @return
      */
-    public final Status Reseed_function(String state_handle, boolean prediction_resistance_request,
-            String additional_input) {
+    public final Status Reseed_function(int state_handle, boolean prediction_resistance_request,
+            ByteBuffer additional_input) {
+
+        return Reseed_function(state_handle, prediction_resistance_request, additional_input, null);
+    }
+
+    /**
+     * The reseed function with the entropy_input of step 4 either gathered
+     * beforehand, outside the state lock, or null to gather it in step 4.
+     */
+    private Status Reseed_function(int state_handle, boolean prediction_resistance_request,
+            ByteBuffer additional_input, Tuple2<Status, byte[]> gathered_entropy_input) {
 
         // 1. Using state_handle, obtain the current internal state. If state_handle
         // indicates an invalid or unused internal state, return (ERROR_FLAG).
@@ -151,9 +233,34 @@ public final class Mechanism {
         // context dependent and therefore unbounded in scope. As long as the state get
         // and set are atomic and get creates a copy of the state reseeding could be
         // done in parallel with generation with minimal interruption to generation in
-        // some circumstances. Here I just use a single state.
-        if (internal_state.handle != state_handle)
-            return Status.ERROR_FLAG;
+        // some circumstances. Here each state is locked for the duration of the
+        // function and the lock is reentrant so the Generate_function can reseed while
+        // holding it.
+        State internal_state = internal_states.get(state_handle);
+        if (internal_state == null)
+            return metrics.status(Status.ERROR_FLAG);
+
+        internal_state.lock.lock();
+        try {
+            if (internal_state.handle != state_handle)
+                return metrics.status(Status.ERROR_FLAG);
+            Status status = metrics.status(Reseed(internal_state, prediction_resistance_request,
+                    additional_input, gathered_entropy_input));
+            if (status == Status.SUCCESS)
+                metrics.reseeded(Metrics.Reseed.EXPLICIT);
+            return status;
+        } finally {
+            internal_state.lock.unlock();
+        }
+    }
+
+    /**
+     * The reseed function proper, from step 2 on, called with the state locked.
+     * A non-null <code>gathered_entropy_input</code> stands in for step 4.
+     */
+    private Status Reseed(State internal_state, boolean prediction_resistance_request,
+            ByteBuffer additional_input, Tuple2<Status, byte[]> gathered_entropy_input) {
+
         State working_state = internal_state;
 
         // 2. If prediction_resistance_request is set, and prediction_resistance_flag is
@@ -163,17 +270,17 @@ public final class Mechanism {
 
         // 3. If the length of the additional_input > max_additional_input_length,
         // return (ERROR_FLAG).
-        if (additional_input.length() > drbg_algorithm.max_additional_input_length)
+        if (len(additional_input) > drbg_algorithm.max_additional_input_length)
             return Status.ERROR_FLAG;
 
         // Comment: Obtain the entropy input.
         // 4. (status, entropy_input) = Get_entropy_input (security_strength,
         // min_length, max_length, prediction_resistance_request).
-        Tuple2<Status, byte[]> entropy_input = entropy_source.Get_entropy_input(
-                internal_state.security_strength,
-                internal_state.security_strength,
-                internal_state.security_strength,
-                prediction_resistance_request);
+        //
+        // NOTE a. The asynchronous functions make this call before the state is
+        // locked, off the caller's thread, and pass its result in.
+        Tuple2<Status, byte[]> entropy_input = gathered_entropy_input != null ? gathered_entropy_input
+                : Get_entropy_input(internal_state.security_strength, prediction_resistance_request);
 
         // Comment: status indications other than SUCCESS could be ERROR_FLAG or
         // CATASTROPHIC_ERROR_FLAG, in which case, the status is returned to the
@@ -189,13 +296,16 @@ public final class Mechanism {
         // Section 10.
         // 6. new_working_state = Reseed_algorithm (working_state, entropy_input,
         // additional_input).
-        State new_working_state = drbg_algorithm.Reseed_algorithm(
-                working_state, entropy_input.second, additional_input);
+        //
+        // NOTE a. The algorithm reseeds the working_state in place, so
+        // new_working_state is working_state.
+        drbg_algorithm.Reseed_algorithm(working_state, entropy_input.second, additional_input);
+        working_state.reseed_time = System.nanoTime();
+        working_state.reseed_bytes = 0;
 
         // 7. Replace the working_state in the internal state for the DRBG instantiation
         // (e.g., as indicated by state_handle) with the values of new_working_state
         // obtained in step 6.
-        internal_state = new_working_state;
 
         // 8. Return (SUCCESS).
         return Status.SUCCESS;
@@ -212,46 +322,240 @@ public final class Mechanism {
      * @param additional_input
      * @return
      */
-    public final Tuple2<Status, byte[]> Generate_function(String state_handle,
+    public final Tuple2<Status, byte[]> Generate_function(int state_handle,
+            int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input) {
+
+        // NOTE a. Step 2 is checked ahead of allocating the returned bits so an
+        // oversized request cannot force a large allocation.
+        if (requested_number_of_bits < 0
+                || requested_number_of_bits > drbg_algorithm.max_number_of_bits_per_request)
+            return new Tuple2<Status, byte[]>(metrics.status(Status.ERROR_FLAG), null);
+
+        byte[] pseudorandom_bits = new byte[(requested_number_of_bits + 7) >>> 3];
+        Status status = Generate_function(state_handle, requested_number_of_bits, requested_security_strength,
+                prediction_resistance_request, additional_input, pseudorandom_bits, 0);
+        if (status != Status.SUCCESS)
+            return new Tuple2<Status, byte[]>(status, null);
+
+        return new Tuple2<Status, byte[]>(Status.SUCCESS, pseudorandom_bits);
+    }
+
+    /**
+     * Create a random stream of bits of <code>requested_number_of_bits</code> in
+     * length written into <code>pseudorandom_bits</code> starting at
+     * <code>offset</code>. Nothing is allocated on this path so it suits frequent
+     * small requests. The array must have room for the requested bits rounded up
+     * to whole bytes.
+     * 
+     * @param state_handle
+     * @param requested_number_of_bits
+     * @param requested_security_strength
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @param offset
+     * @return
+     */
+    public final Status Generate_function(int state_handle,
+            int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input,
+            byte[] pseudorandom_bits, int offset) {
+
+        if (pseudorandom_bits == null || offset < 0 || requested_number_of_bits < 0
+                || ((requested_number_of_bits + 7L) >>> 3) > pseudorandom_bits.length - offset)
+            return metrics.status(Status.ERROR_FLAG);
+
+        return Generate(state_handle, requested_number_of_bits, requested_security_strength,
+                prediction_resistance_request, additional_input, pseudorandom_bits, offset, null, null);
+    }
+
+    /**
+     * Create a random stream of bits of <code>requested_number_of_bits</code> in
+     * length written into <code>pseudorandom_bits</code> at its position. On
+     * success the position is advanced past the written bytes. Direct buffers are
+     * supported.
+     * 
+     * @param state_handle
+     * @param requested_number_of_bits
+     * @param requested_security_strength
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @return
+     */
+    public final Status Generate_function(int state_handle,
             int requested_number_of_bits, int requested_security_strength,
-            boolean prediction_resistance_request, String additional_input) {
+            boolean prediction_resistance_request, ByteBuffer additional_input,
+            ByteBuffer pseudorandom_bits) {
+
+        if (pseudorandom_bits == null || pseudorandom_bits.isReadOnly() || requested_number_of_bits < 0
+                || ((requested_number_of_bits + 7L) >>> 3) > pseudorandom_bits.remaining())
+            return metrics.status(Status.ERROR_FLAG);
+
+        return Generate(state_handle, requested_number_of_bits, requested_security_strength,
+                prediction_resistance_request, additional_input, null, 0, pseudorandom_bits, null);
+    }
+
+    /**
+     * Runs a batch of generate requests, request i asking for
+     * <code>requested_number_of_bits[i]</code> bits from
+     * <code>state_handles[i]</code> with <code>additional_input[i]</code>. The
+     * outputs are packed in request order into <code>pseudorandom_bits</code>
+     * from <code>offset</code>, each rounded up to whole bytes, and the offset of
+     * request i is written to <code>offsets[i]</code> and its status to
+     * <code>statuses[i]</code>.
+     *
+     * Requests for the same state are grouped, so each state is looked up and
+     * locked once per batch and its requests run back to back. The requests of a
+     * state run in their batch order. Prediction resistance cannot be requested,
+     * but a state instantiated with it still reseeds when step 9.2 calls for it.
+     *
+     * @param state_handles
+     * @param requested_number_of_bits
+     * @param requested_security_strength applies to every request.
+     * @param additional_input            null, or one entry per request, each
+     *                                    possibly null.
+     * @param pseudorandom_bits
+     * @param offset
+     * @param offsets                     receives the offset of each request.
+     * @param statuses                    receives the status of each request.
+     * @return SUCCESS if every request succeeded, otherwise the first failing
+     *         status in request order. ERROR_FLAG without generating anything if
+     *         the arrays do not match or the output has no room for the batch.
+     */
+    public final Status Generate_function(int[] state_handles, int[] requested_number_of_bits,
+            int requested_security_strength, ByteBuffer[] additional_input, byte[] pseudorandom_bits,
+            int offset, int[] offsets, Status[] statuses) {
+
+        int count = state_handles.length;
+        if (requested_number_of_bits.length != count
+                || (additional_input != null && additional_input.length != count)
+                || offsets.length < count || statuses.length < count || pseudorandom_bits == null || offset < 0)
+            return metrics.status(Status.ERROR_FLAG);
+
+        // Lay out the output and order the requests by state in one pass. Each key
+        // holds the state_handle above the request index, so sorting the keys groups
+        // the requests of a state and keeps them in batch order.
+        long[] keys = new long[count];
+        long end = offset;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = (int) Math.min(end, Integer.MAX_VALUE);
+            if (requested_number_of_bits[i] >= 0)
+                end += (requested_number_of_bits[i] + 7L) >>> 3;
+            keys[i] = ((long) state_handles[i] << 32) | i;
+        }
+        if (end > pseudorandom_bits.length)
+            return metrics.status(Status.ERROR_FLAG);
+        Arrays.sort(keys);
+
+        for (int k = 0; k < count;) {
+            int state_handle = (int) (keys[k] >> 32);
+            int group_end = k + 1;
+            while (group_end < count && (int) (keys[group_end] >> 32) == state_handle)
+                group_end++;
+
+            State internal_state = internal_states.get(state_handle);
+            if (internal_state != null)
+                internal_state.lock.lock();
+            try {
+                boolean valid = internal_state != null && internal_state.handle == state_handle;
+                for (; k < group_end; k++) {
+                    int i = (int) keys[k];
+                    Status status = Status.ERROR_FLAG;
+                    if (valid && requested_number_of_bits[i] >= 0)
+                        status = Generate(internal_state, requested_number_of_bits[i], requested_security_strength,
+                                false, additional_input == null ? null : additional_input[i], pseudorandom_bits,
+                                offsets[i], null, null);
+                    if (metrics.status(status) == Status.SUCCESS)
+                        metrics.generated(requested_number_of_bits[i]);
+                    statuses[i] = status;
+                }
+            } finally {
+                if (internal_state != null)
+                    internal_state.lock.unlock();
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+            if (statuses[i] != Status.SUCCESS)
+                return statuses[i];
+        return Status.SUCCESS;
+    }
+
+    /**
+     * Looks up and locks the internal state for the generate function. The bits
+     * are written either to the array at the offset or, when the array is null, to
+     * the buffer. The outcome is counted here. A non-null
+     * <code>gathered_entropy_input</code> is used by the first reseed of step 7.
+     */
+    private Status Generate(int state_handle,
+            int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input,
+            byte[] pseudorandom_bits, int offset, ByteBuffer pseudorandom_buffer,
+            Tuple2<Status, byte[]> gathered_entropy_input) {
+
+        // Comment: Get the internal state and check the input parameters.
+        // 1. Using state_handle, obtain the current internal state for the
+        // instantiation. If state_handle indicates an invalid or unused internal state,
+        // then return (ERROR_FLAG, Null).
+        State internal_state = internal_states.get(state_handle);
+        if (internal_state == null)
+            return metrics.status(Status.ERROR_FLAG);
+
+        internal_state.lock.lock();
+        try {
+            if (internal_state.handle != state_handle)
+                return metrics.status(Status.ERROR_FLAG);
+            Status status = metrics.status(Generate(internal_state, requested_number_of_bits,
+                    requested_security_strength, prediction_resistance_request, additional_input,
+                    pseudorandom_bits, offset, pseudorandom_buffer, gathered_entropy_input));
+            if (status == Status.SUCCESS)
+                metrics.generated(requested_number_of_bits);
+            return status;
+        } finally {
+            internal_state.lock.unlock();
+        }
+    }
+
+    /**
+     * The generate function proper, from step 2 on, called with the state locked.
+     */
+    private Status Generate(State internal_state,
+            int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input,
+            byte[] pseudorandom_bits, int offset, ByteBuffer pseudorandom_buffer,
+            Tuple2<Status, byte[]> gathered_entropy_input) {
 
         // NOTE: This function required a few locals for control logic and scoping. I
         // only get away with masking by reference because of the simplicity of this
         // investigation's scope. In a production implementation more care would need to
         // be taken.
-        String working_additional_input = additional_input;
+        ByteBuffer working_additional_input = additional_input;
         boolean working_prediction_resistance_request = prediction_resistance_request;
         boolean entropy_has_not_been_generated = true;
-        byte[] generated_entropy = null;
 
-        // Comment: Get the internal state and check the input parameters.
-        // 1. Using state_handle, obtain the current internal state for the
-        // instantiation. If state_handle indicates an invalid or unused internal state,
-        // then return (ERROR_FLAG, Null).
-        if (internal_state.handle != state_handle)
-            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
         State working_state = internal_state;
 
         // 2. If requested_number_of_bits > max_number_of_bits_per_request, then return
         // (ERROR_FLAG, Null).
         if (requested_number_of_bits > drbg_algorithm.max_number_of_bits_per_request)
-            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+            return Status.ERROR_FLAG;
 
         // 3. If requested_security_strength > the security_strength indicated in the
         // internal state, then return (ERROR_FLAG, Null).
         if (requested_security_strength > internal_state.security_strength)
-            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+            return Status.ERROR_FLAG;
 
         // 4. If the length of the additional_input > max_additional_input_length, then
         // return (ERROR_FLAG, Null).
-        if (working_additional_input.length() > drbg_algorithm.max_additional_input_length)
-            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+        if (len(working_additional_input) > drbg_algorithm.max_additional_input_length)
+            return Status.ERROR_FLAG;
 
         // 5. If prediction_resistance_request is set, and prediction_resistance_flag is
         // not set, then return (ERROR_FLAG, Null).
         if (working_prediction_resistance_request && !drbg_algorithm.prediction_resistance_flag)
-            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+            return Status.ERROR_FLAG;
 
         // 6. Clear the reseed_required_flag.
         internal_state.reseed_required_flag = false;
@@ -267,8 +571,9 @@ public final class Mechanism {
 
                 // 7.1 status = Reseed_function (state_handle, prediction_resistance_request,
                 // additional_input).
-                Status status = Reseed_function(state_handle, working_prediction_resistance_request,
-                        working_additional_input);
+                Status status = Reseed(internal_state, working_prediction_resistance_request,
+                        working_additional_input, gathered_entropy_input);
+                gathered_entropy_input = null;
 
                 // Comment: status indications other than SUCCESS could be ERROR_FLAG or
                 // CATASTROPHIC_ERROR_FLAG, in which case, the status is returned to the
@@ -278,7 +583,10 @@ public final class Mechanism {
                 // failed.
                 // 7.2 If (status ≠ SUCCESS), then return (status, Null).
                 if (status != Status.SUCCESS)
-                    return new Tuple2<Status, byte[]>(status, null);
+                    return status;
+
+                metrics.reseeded(internal_state.reseed_required_flag ? Metrics.Reseed.INTERVAL
+                        : Metrics.Reseed.PREDICTION_RESISTANCE);
 
                 // 7.3 Using state_handle, obtain the new internal state.
                 working_state = internal_state;
@@ -297,15 +605,22 @@ public final class Mechanism {
             //
             // NOTE a. The psuedocode in the standard doesn't deal with exceptions from
             // Generate_algorithm.
-            Tuple3<Status, byte[], State> generated = drbg_algorithm.Generate_algorithm(working_state,
-                    requested_number_of_bits, working_additional_input);
-
-            if (!(generated.first == Status.SUCCESS || generated.first == Status.RESEED_REQUIRED))
-                return new Tuple2<Status, byte[]>(generated.first, null);
+            //
+            // NOTE b. The algorithm writes the pseudorandom_bits straight into the
+            // caller's storage and updates the working_state in place, so
+            // new_working_state is working_state.
+            Status status = pseudorandom_bits != null
+                    ? drbg_algorithm.Generate_algorithm(working_state, requested_number_of_bits,
+                            working_additional_input, pseudorandom_bits, offset)
+                    : drbg_algorithm.Generate_algorithm(working_state, requested_number_of_bits,
+                            working_additional_input, pseudorandom_buffer);
+
+            if (!(status == Status.SUCCESS || status == Status.RESEED_REQUIRED))
+                return status;
 
             // 9. If status indicates that a reseed is required before the requested bits
             // can be generated, then:
-            if (generated.first == Status.RESEED_REQUIRED) {
+            if (status == Status.RESEED_REQUIRED) {
 
                 // 9.1 Set the reseed_required_flag.
                 working_state.reseed_required_flag = true;
@@ -319,8 +634,6 @@ public final class Mechanism {
             } else {
 
                 entropy_has_not_been_generated = false;
-                generated_entropy = generated.second;
-                working_state = generated.third;
             }
 
         }
@@ -328,10 +641,184 @@ public final class Mechanism {
         // 10. Replace the old working_state in the internal state of the DRBG
         // instantiation (e.g., as indicated by state_handle) with the values of
         // new_working_state.
-        internal_state = working_state;
+        working_state.reseed_bytes += (requested_number_of_bits + 7) >>> 3;
+        if (reseed_executor != null)
+            Schedule_reseed(working_state);
 
         // 11. Return (SUCCESS, pseudorandom_bits).
-        return new Tuple2<Status, byte[]>(Status.SUCCESS, generated_entropy);
+        return Status.SUCCESS;
+    }
+
+    /**
+     * Queues a background reseed of <code>internal_state</code> if it is close to
+     * its reseed_interval or past its reseed_age and none is already queued.
+     * Called with the state locked.
+     * 
+     * @param internal_state
+     */
+    private void Schedule_reseed(State internal_state) {
+
+        if (internal_state.reseed_pending)
+            return;
+        if (internal_state.reseed_counter < drbg_algorithm.reseed_interval - reseed_margin
+                && (reseed_age <= 0 || System.nanoTime() - internal_state.reseed_time < reseed_age))
+            return;
+
+        int state_handle = internal_state.handle;
+        internal_state.reseed_pending = true;
+        try {
+            reseed_executor.execute(() -> Background_reseed(state_handle));
+        } catch (RejectedExecutionException e) {
+            internal_state.reseed_pending = false;
+        }
+    }
+
+    /**
+     * Reseeds the state indicated by <code>state_handle</code> off the generate
+     * path.
+     * 
+     * NOTE a. This is the parallel reseed suggested in NOTE b of the
+     * Reseed_function. The slow part, Get_entropy_input, runs without the state
+     * lock so generation carries on meanwhile. The Reseed_algorithm itself is a
+     * handful of block operations and is applied in place under the lock, which
+     * publishes the reseeded working_state atomically with respect to generation
+     * without a copy whose updates could race with the generations it missed.
+     * 
+     * NOTE b. Also called by the ReseedScheduler.
+     * 
+     * @param state_handle
+     * @return
+     */
+    Status Background_reseed(int state_handle) {
+
+        State internal_state = internal_states.get(state_handle);
+        if (internal_state == null)
+            return Status.ERROR_FLAG;
+
+        Tuple2<Status, byte[]> entropy_input = Get_entropy_input(internal_state.security_strength, false);
+
+        internal_state.lock.lock();
+        try {
+            internal_state.reseed_pending = false;
+            if (internal_state.handle != state_handle)
+                return Status.ERROR_FLAG;
+            if (metrics.status(entropy_input.first) != Status.SUCCESS)
+                return entropy_input.first;
+
+            drbg_algorithm.Reseed_algorithm(internal_state, entropy_input.second, null);
+            internal_state.reseed_time = System.nanoTime();
+            internal_state.reseed_bytes = 0;
+            metrics.reseeded(Metrics.Reseed.BACKGROUND);
+            return Status.SUCCESS;
+        } finally {
+            internal_state.lock.unlock();
+            if (entropy_input.second != null)
+                Arrays.fill(entropy_input.second, (byte) 0);
+        }
+    }
+
+    // ----- Asynchronous functions
+
+    /**
+     * Instantiate_function run on <code>executor</code>, so the caller never
+     * waits on the entropy source. The personalization_string is read on the
+     * executor and must not change before the future completes.
+     * 
+     * Nothing on the path takes a monitor, the states are guarded by
+     * ReentrantLocks, so a virtual thread waiting on the future does not pin its
+     * carrier. The executor should run on platform threads, the entropy source
+     * may block inside the JDK.
+     * 
+     * @param requested_instantiation_security_strength
+     * @param prediction_resistance_flag
+     * @param personalization_string
+     * @param executor
+     * @return
+     */
+    public final CompletableFuture<Tuple2<Status, Integer>> Instantiate_function_async(
+            int requested_instantiation_security_strength, boolean prediction_resistance_flag,
+            ByteBuffer personalization_string, Executor executor) {
+
+        return CompletableFuture.supplyAsync(() -> Instantiate_function(requested_instantiation_security_strength,
+                prediction_resistance_flag, personalization_string), executor);
+    }
+
+    /**
+     * Reseed_function with the entropy gathered on <code>executor</code> before
+     * the state is locked, so generation from the state carries on while the
+     * entropy source is slow. The additional_input must not change before the
+     * future completes.
+     * 
+     * @param state_handle
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @param executor
+     * @return
+     */
+    public final CompletableFuture<Status> Reseed_function_async(int state_handle,
+            boolean prediction_resistance_request, ByteBuffer additional_input, Executor executor) {
+
+        return CompletableFuture.supplyAsync(() -> {
+            State internal_state = internal_states.get(state_handle);
+            if (internal_state == null)
+                return metrics.status(Status.ERROR_FLAG);
+
+            Tuple2<Status, byte[]> entropy_input = Get_entropy_input(internal_state.security_strength,
+                    prediction_resistance_request);
+            try {
+                return Reseed_function(state_handle, prediction_resistance_request, additional_input,
+                        entropy_input);
+            } finally {
+                if (entropy_input.second != null)
+                    Arrays.fill(entropy_input.second, (byte) 0);
+            }
+        }, executor);
+    }
+
+    /**
+     * Generate_function on <code>executor</code>. With prediction resistance the
+     * entropy for the reseed of step 7 is gathered before the state is locked,
+     * so other callers of the state only wait for the reseed and generate
+     * algorithms. The additional_input must not change before the future
+     * completes.
+     * 
+     * @param state_handle
+     * @param requested_number_of_bits
+     * @param requested_security_strength
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @param executor
+     * @return
+     */
+    public final CompletableFuture<Tuple2<Status, byte[]>> Generate_function_async(int state_handle,
+            int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input, Executor executor) {
+
+        return CompletableFuture.supplyAsync(() -> {
+            if (requested_number_of_bits < 0
+                    || requested_number_of_bits > drbg_algorithm.max_number_of_bits_per_request)
+                return new Tuple2<Status, byte[]>(metrics.status(Status.ERROR_FLAG), null);
+
+            // Entropy is only gathered ahead for a request step 5 will accept.
+            Tuple2<Status, byte[]> entropy_input = null;
+            if (prediction_resistance_request && drbg_algorithm.prediction_resistance_flag) {
+                State internal_state = internal_states.get(state_handle);
+                if (internal_state == null)
+                    return new Tuple2<Status, byte[]>(metrics.status(Status.ERROR_FLAG), null);
+                entropy_input = Get_entropy_input(internal_state.security_strength, true);
+            }
+
+            try {
+                byte[] pseudorandom_bits = new byte[(requested_number_of_bits + 7) >>> 3];
+                Status status = Generate(state_handle, requested_number_of_bits, requested_security_strength,
+                        prediction_resistance_request, additional_input, pseudorandom_bits, 0, null,
+                        entropy_input);
+                return new Tuple2<Status, byte[]>(status, status == Status.SUCCESS ? pseudorandom_bits : null);
+            } finally {
+                if (entropy_input != null && entropy_input.second != null)
+                    Arrays.fill(entropy_input.second, (byte) 0);
+            }
+        }, executor);
     }
 
     /**
@@ -340,17 +827,96 @@ public final class Mechanism {
      * @param state_handle
      * @return
      */
-    public final Status Uninstantiate_function(String state_handle) {
+    public final Status Uninstantiate_function(int state_handle) {
 
         // 1. If state_handle indicates an invalid state, then return (ERROR_FLAG).
-        if (state_handle != internal_state.handle)
-            return Status.ERROR_FLAG;
+        State internal_state = internal_states.get(state_handle);
+        if (internal_state == null)
+            return metrics.status(Status.ERROR_FLAG);
 
         // 2. Erase the contents of the internal state indicated by state_handle.
-        // TODO: Think about options for secure deletion.
-        this.internal_state = new State();
+        // NOTE a. Zeroing is best effort, the JVM may have copied the arrays when
+        // it moved them.
+        internal_state.lock.lock();
+        try {
+            if (internal_states.remove(state_handle) == null)
+                return metrics.status(Status.ERROR_FLAG);
+            internal_state.handle = Invalid;
+            internal_state.erase();
+        } finally {
+            internal_state.lock.unlock();
+        }
 
         // 3. Return (SUCCESS).
         return Status.SUCCESS;
     }
+
+    /**
+     * Get_entropy_input (security_strength, min_length, max_length,
+     * prediction_resistance_request) for the algorithm's lengths, timed for the
+     * metrics. CATASTROPHIC_ERROR_FLAG while the start-up test has not passed.
+     */
+    private Tuple2<Status, byte[]> Get_entropy_input(int security_strength,
+            boolean prediction_resistance_request) {
+
+        if (startup_status != Status.SUCCESS)
+            return new Tuple2<Status, byte[]>(Status.CATASTROPHIC_ERROR_FLAG, null);
+
+        long start = System.nanoTime();
+        try {
+            return entropy_source.Get_entropy_input(security_strength, drbg_algorithm.min_length,
+                    drbg_algorithm.max_length, prediction_resistance_request);
+        } finally {
+            metrics.entropy(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * The internal state indicated by <code>state_handle</code>, or null. For
+     * reading its reseed accounting without the lock, the fields may be stale.
+     */
+    State getState(int state_handle) {
+        return internal_states.get(state_handle);
+    }
+
+    /**
+     * The counters of this mechanism. <code>Metrics.aggregate()</code> has the
+     * totals over all mechanisms.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The highest security strength the algorithm supports, in bits.
+     */
+    public int getHighestSupportedSecurityStrength() {
+        return drbg_algorithm.highest_supported_security_strength;
+    }
+
+    /**
+     * The largest request, in bits, a single generate accepts.
+     */
+    public int getMaxNumberOfBitsPerRequest() {
+        return drbg_algorithm.max_number_of_bits_per_request;
+    }
+
+    /**
+     * The longest additional_input, in bits, a single reseed or generate accepts.
+     */
+    public int getMaxAdditionalInputLength() {
+        return drbg_algorithm.max_additional_input_length;
+    }
+
+    /**
+     * The length in bits of the remaining bytes of <code>bit_string</code>, 0 for
+     * the Null string.
+     * 
+     * @param bit_string
+     * @return
+     */
+    private static long len(ByteBuffer bit_string) {
+
+        return bit_string == null ? 0 : (long) bit_string.remaining() << 3;
+    }
 }
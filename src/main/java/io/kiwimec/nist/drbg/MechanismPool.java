@@ -0,0 +1,338 @@
+package io.kiwimec.nist.drbg;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.kiwimec.nist.source.Entropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * A pool of independently instantiated Mechanisms, one per stripe, for many
+ * threads generating at once. A single instantiation serialises its callers on
+ * its state lock, here each thread is routed by a hash of its id to a home
+ * stripe and only moves to another stripe if its home is busy. If every stripe
+ * is busy it waits for its home stripe.
+ *
+ * Every stripe is a complete DRBG with its own seed, reseed_counter and reseed
+ * schedule, so reseeds are accounted and paid for per stripe and a reseed only
+ * holds up the threads using that stripe.
+ */
+public final class MechanismPool {
+
+    private final Stripe[] stripes;
+
+    /**
+     * One stripe, a Mechanism with a single instantiation. The counters are only
+     * written under <code>lock</code> and are volatile so they can be read
+     * without it.
+     */
+    private static final class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+        final Mechanism mechanism;
+        volatile int state_handle = Mechanism.Invalid;
+
+        volatile long requests;
+        volatile long bytes;
+        volatile long reseeds;
+        volatile long fallbacks;
+
+        Stripe(Mechanism mechanism) {
+            this.mechanism = mechanism;
+        }
+    }
+
+    /**
+     * A pool of one stripe per available processor.
+     *
+     * @param entropy_source
+     * @param nonce_source
+     * @param drbg_algorithm
+     */
+    public MechanismPool(Entropy entropy_source, Nonce nonce_source, Algorithm drbg_algorithm) {
+
+        this(entropy_source, nonce_source, drbg_algorithm, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param entropy_source shared by the stripes, must be thread safe.
+     * @param nonce_source   shared by the stripes.
+     * @param drbg_algorithm shared by the stripes, it keeps no state of its own.
+     * @param stripes        number of independent instantiations.
+     */
+    public MechanismPool(Entropy entropy_source, Nonce nonce_source, Algorithm drbg_algorithm, int stripes) {
+
+        if (stripes < 1)
+            throw new IllegalArgumentException("A pool needs at least one stripe");
+
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++)
+            this.stripes[i] = new Stripe(new Mechanism(entropy_source, nonce_source, drbg_algorithm));
+    }
+
+    /**
+     * Instantiates every stripe with the same parameters. If any stripe fails the
+     * stripes already instantiated are uninstantiated again.
+     *
+     * @param requested_instantiation_security_strength
+     * @param prediction_resistance_flag
+     * @param personalization_string
+     * @return
+     */
+    public Status Instantiate_function(int requested_instantiation_security_strength,
+            boolean prediction_resistance_flag, ByteBuffer personalization_string) {
+
+        for (int i = 0; i < stripes.length; i++) {
+            Stripe stripe = stripes[i];
+            stripe.lock.lock();
+            try {
+                if (stripe.state_handle != Mechanism.Invalid)
+                    return Status.ERROR_FLAG;
+
+                Tuple2<Status, Integer> instantiated = stripe.mechanism.Instantiate_function(
+                        requested_instantiation_security_strength, prediction_resistance_flag,
+                        personalization_string);
+                if (instantiated.first != Status.SUCCESS) {
+                    Uninstantiate_function();
+                    return instantiated.first;
+                }
+                stripe.state_handle = instantiated.second;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return Status.SUCCESS;
+    }
+
+    /**
+     * Reseeds every stripe.
+     *
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @return the first status other than SUCCESS, or SUCCESS.
+     */
+    public Status Reseed_function(boolean prediction_resistance_request, ByteBuffer additional_input) {
+
+        Status result = Status.SUCCESS;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                Status status = stripe.mechanism.Reseed_function(stripe.state_handle,
+                        prediction_resistance_request, additional_input);
+                if (status == Status.SUCCESS)
+                    stripe.reseeds++;
+                else if (result == Status.SUCCESS)
+                    result = status;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * See <code>Mechanism.Generate_function</code>. The request is served by a
+     * single stripe.
+     *
+     * @param requested_number_of_bits
+     * @param requested_security_strength
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @return
+     */
+    public Tuple2<Status, byte[]> Generate_function(int requested_number_of_bits,
+            int requested_security_strength, boolean prediction_resistance_request,
+            ByteBuffer additional_input) {
+
+        Stripe stripe = acquire();
+        try {
+            Tuple2<Status, byte[]> result = stripe.mechanism.Generate_function(stripe.state_handle,
+                    requested_number_of_bits, requested_security_strength, prediction_resistance_request,
+                    additional_input);
+            if (result.first == Status.SUCCESS)
+                account(stripe, requested_number_of_bits, prediction_resistance_request);
+            return result;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * See <code>Mechanism.Generate_function</code>. The request is served by a
+     * single stripe.
+     *
+     * @param requested_number_of_bits
+     * @param requested_security_strength
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @param offset
+     * @return
+     */
+    public Status Generate_function(int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input, byte[] pseudorandom_bits,
+            int offset) {
+
+        Stripe stripe = acquire();
+        try {
+            Status status = stripe.mechanism.Generate_function(stripe.state_handle, requested_number_of_bits,
+                    requested_security_strength, prediction_resistance_request, additional_input,
+                    pseudorandom_bits, offset);
+            if (status == Status.SUCCESS)
+                account(stripe, requested_number_of_bits, prediction_resistance_request);
+            return status;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * See <code>Mechanism.Generate_function</code>. The request is served by a
+     * single stripe.
+     *
+     * @param requested_number_of_bits
+     * @param requested_security_strength
+     * @param prediction_resistance_request
+     * @param additional_input
+     * @param pseudorandom_bits
+     * @return
+     */
+    public Status Generate_function(int requested_number_of_bits, int requested_security_strength,
+            boolean prediction_resistance_request, ByteBuffer additional_input, ByteBuffer pseudorandom_bits) {
+
+        Stripe stripe = acquire();
+        try {
+            Status status = stripe.mechanism.Generate_function(stripe.state_handle, requested_number_of_bits,
+                    requested_security_strength, prediction_resistance_request, additional_input,
+                    pseudorandom_bits);
+            if (status == Status.SUCCESS)
+                account(stripe, requested_number_of_bits, prediction_resistance_request);
+            return status;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Uninstantiates every stripe.
+     *
+     * @return
+     */
+    public Status Uninstantiate_function() {
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                if (stripe.state_handle != Mechanism.Invalid)
+                    stripe.mechanism.Uninstantiate_function(stripe.state_handle);
+                stripe.state_handle = Mechanism.Invalid;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return Status.SUCCESS;
+    }
+
+    /**
+     * The largest request, in bits, a single generate accepts.
+     */
+    public int getMaxNumberOfBitsPerRequest() {
+        return stripes[0].mechanism.getMaxNumberOfBitsPerRequest();
+    }
+
+    /**
+     * Number of stripes.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Successful generate requests served by <code>stripe</code>.
+     */
+    public long getRequestCount(int stripe) {
+        return stripes[stripe].requests;
+    }
+
+    /**
+     * Bytes generated by <code>stripe</code>.
+     */
+    public long getByteCount(int stripe) {
+        return stripes[stripe].bytes;
+    }
+
+    /**
+     * Explicit and prediction resistance reseeds of <code>stripe</code>. Reseeds
+     * forced by the reseed_interval are made inside the stripe's mechanism and
+     * are not counted.
+     */
+    public long getReseedCount(int stripe) {
+        return stripes[stripe].reseeds;
+    }
+
+    /**
+     * Requests <code>stripe</code> served after the caller's home stripe was
+     * found busy.
+     */
+    public long getFallbackCount(int stripe) {
+        return stripes[stripe].fallbacks;
+    }
+
+    // ----- Local implementation
+
+    /**
+     * The mechanism of <code>stripe</code>, for the ReseedScheduler.
+     */
+    Mechanism getMechanism(int stripe) {
+        return stripes[stripe].mechanism;
+    }
+
+    /**
+     * The state_handle of <code>stripe</code>, Mechanism.Invalid if it is not
+     * instantiated.
+     */
+    int getStateHandle(int stripe) {
+        return stripes[stripe].state_handle;
+    }
+
+    /**
+     * Locks and returns a stripe for the calling thread. The home stripe is tried
+     * first, then the others in turn, and if all are busy the caller waits for its
+     * home stripe.
+     */
+    private Stripe acquire() {
+
+        long id = Thread.currentThread().getId();
+        int home = (int) (((id * 0x9E3779B97F4A7C15L) >>> 32) % stripes.length);
+
+        Stripe stripe = stripes[home];
+        if (stripe.lock.tryLock())
+            return stripe;
+
+        for (int i = 1; i < stripes.length; i++) {
+            Stripe other = stripes[(home + i) % stripes.length];
+            if (other.lock.tryLock()) {
+                other.fallbacks++;
+                return other;
+            }
+        }
+
+        stripe.lock.lock();
+        return stripe;
+    }
+
+    /**
+     * Records a successful generate against <code>stripe</code>. Called with the
+     * stripe locked.
+     */
+    private static void account(Stripe stripe, int requested_number_of_bits,
+            boolean prediction_resistance_request) {
+
+        stripe.requests++;
+        stripe.bytes += (requested_number_of_bits + 7) >>> 3;
+        if (prediction_resistance_request)
+            stripe.reseeds++;
+    }
+}
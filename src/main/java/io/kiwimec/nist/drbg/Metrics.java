@@ -0,0 +1,341 @@
+package io.kiwimec.nist.drbg;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import io.kiwimec.nist.util.Status;
+
+/**
+ * Runtime counters of a <code>Mechanism</code>. Every mechanism keeps its own
+ * and also adds to the process wide <code>aggregate()</code>. The counters are
+ * LongAdders, so threads on different states record without contending and the
+ * cost on the generate path is a couple of uncontended adds.
+ *
+ * The values are pulled, either live through the getters, as a frozen
+ * <code>snapshot()</code>, or over JMX once <code>register</code>ed. Nothing is
+ * registered over JMX unless asked, the aggregate included.
+ */
+public final class Metrics implements MetricsMXBean {
+
+    static final int LATENCY_BUCKETS = 24;
+
+    /**
+     * The JMX name of the aggregate, see <code>registerAggregate</code>.
+     */
+    public static final String AGGREGATE_NAME = "io.kiwimec.nist.drbg:type=Metrics,name=aggregate";
+
+    private static final Metrics AGGREGATE = new Metrics(null);
+
+    // Also updated for every update of this instance, null for the aggregate.
+    private final Metrics parent;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder instantiations = new LongAdder();
+    private final LongAdder interval_reseeds = new LongAdder();
+    private final LongAdder prediction_resistance_reseeds = new LongAdder();
+    private final LongAdder explicit_reseeds = new LongAdder();
+    private final LongAdder background_reseeds = new LongAdder();
+    private final LongAdder entropy_calls = new LongAdder();
+    private final LongAdder entropy_nanos = new LongAdder();
+    private final LongAdder[] entropy_latency = new LongAdder[LATENCY_BUCKETS];
+    private final LongAdder[] errors = new LongAdder[Status.values().length];
+
+    Metrics() {
+        this(AGGREGATE);
+    }
+
+    private Metrics(Metrics parent) {
+        this.parent = parent;
+        for (int i = 0; i < entropy_latency.length; i++)
+            entropy_latency[i] = new LongAdder();
+        for (int i = 0; i < errors.length; i++)
+            errors[i] = new LongAdder();
+    }
+
+    /**
+     * The totals over every Mechanism in the process.
+     */
+    public static Metrics aggregate() {
+        return AGGREGATE;
+    }
+
+    /**
+     * Registers the aggregate with the platform MBean server as AGGREGATE_NAME.
+     *
+     * @return false if the name is already registered, for example by another
+     *         class loader, or registration is not permitted.
+     */
+    public static boolean registerAggregate() {
+        return AGGREGATE.register(AGGREGATE_NAME);
+    }
+
+    /**
+     * Removes the aggregate from the platform MBean server.
+     */
+    public static void unregisterAggregate() {
+        AGGREGATE.unregister(AGGREGATE_NAME);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @param object_name for example
+     *                    <code>io.kiwimec.nist.drbg:type=Metrics,name=session-keys</code>.
+     * @return false if the name is invalid or already registered, or registration
+     *         is not permitted.
+     */
+    public boolean register(String object_name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(object_name));
+            return true;
+        } catch (JMException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server.
+     *
+     * @param object_name
+     */
+    public void unregister(String object_name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(object_name));
+        } catch (JMException | SecurityException e) {
+            // Not registered, or not permitted.
+        }
+    }
+
+    /**
+     * The current values, read counter by counter while recording carries on.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // ----- MetricsMXBean
+
+    @Override
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getByteCount() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getInstantiateCount() {
+        return instantiations.sum();
+    }
+
+    @Override
+    public long getIntervalReseedCount() {
+        return interval_reseeds.sum();
+    }
+
+    @Override
+    public long getPredictionResistanceReseedCount() {
+        return prediction_resistance_reseeds.sum();
+    }
+
+    @Override
+    public long getExplicitReseedCount() {
+        return explicit_reseeds.sum();
+    }
+
+    @Override
+    public long getBackgroundReseedCount() {
+        return background_reseeds.sum();
+    }
+
+    @Override
+    public long getEntropyCallCount() {
+        return entropy_calls.sum();
+    }
+
+    @Override
+    public long getEntropyNanos() {
+        return entropy_nanos.sum();
+    }
+
+    @Override
+    public long[] getEntropyLatencyHistogram() {
+        long[] histogram = new long[LATENCY_BUCKETS];
+        for (int i = 0; i < histogram.length; i++)
+            histogram[i] = entropy_latency[i].sum();
+        return histogram;
+    }
+
+    @Override
+    public Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        for (Status status : Status.values())
+            if (status != Status.SUCCESS)
+                counts.put(status.name(), errors[status.ordinal()].sum());
+        return counts;
+    }
+
+    // ----- Recording, package scope for the Mechanism.
+
+    void generated(int requested_number_of_bits) {
+        for (Metrics m = this; m != null; m = m.parent) {
+            m.requests.increment();
+            m.bytes.add((requested_number_of_bits + 7) >>> 3);
+        }
+    }
+
+    void instantiated() {
+        for (Metrics m = this; m != null; m = m.parent)
+            m.instantiations.increment();
+    }
+
+    void reseeded(Reseed reason) {
+        for (Metrics m = this; m != null; m = m.parent) {
+            switch (reason) {
+                case INTERVAL:
+                    m.interval_reseeds.increment();
+                    break;
+                case PREDICTION_RESISTANCE:
+                    m.prediction_resistance_reseeds.increment();
+                    break;
+                case EXPLICIT:
+                    m.explicit_reseeds.increment();
+                    break;
+                default:
+                    m.background_reseeds.increment();
+            }
+        }
+    }
+
+    void entropy(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = Math.min(LATENCY_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        for (Metrics m = this; m != null; m = m.parent) {
+            m.entropy_calls.increment();
+            m.entropy_nanos.add(nanos);
+            m.entropy_latency[bucket].increment();
+        }
+    }
+
+    /**
+     * Counts <code>status</code> if it is not SUCCESS and returns it.
+     */
+    Status status(Status status) {
+        if (status != Status.SUCCESS)
+            for (Metrics m = this; m != null; m = m.parent)
+                m.errors[status.ordinal()].increment();
+        return status;
+    }
+
+    /**
+     * What caused a reseed.
+     */
+    enum Reseed {
+        INTERVAL, PREDICTION_RESISTANCE, EXPLICIT, BACKGROUND
+    }
+
+    /**
+     * A frozen copy of a <code>Metrics</code>.
+     */
+    public static final class Snapshot implements MetricsMXBean {
+
+        private final long requests;
+        private final long bytes;
+        private final long instantiations;
+        private final long interval_reseeds;
+        private final long prediction_resistance_reseeds;
+        private final long explicit_reseeds;
+        private final long background_reseeds;
+        private final long entropy_calls;
+        private final long entropy_nanos;
+        private final long[] entropy_latency;
+        private final Map<String, Long> errors;
+
+        private Snapshot(Metrics metrics) {
+            requests = metrics.getRequestCount();
+            bytes = metrics.getByteCount();
+            instantiations = metrics.getInstantiateCount();
+            interval_reseeds = metrics.getIntervalReseedCount();
+            prediction_resistance_reseeds = metrics.getPredictionResistanceReseedCount();
+            explicit_reseeds = metrics.getExplicitReseedCount();
+            background_reseeds = metrics.getBackgroundReseedCount();
+            entropy_calls = metrics.getEntropyCallCount();
+            entropy_nanos = metrics.getEntropyNanos();
+            entropy_latency = metrics.getEntropyLatencyHistogram();
+            errors = Collections.unmodifiableMap(metrics.getErrorCounts());
+        }
+
+        @Override
+        public long getRequestCount() {
+            return requests;
+        }
+
+        @Override
+        public long getByteCount() {
+            return bytes;
+        }
+
+        @Override
+        public long getInstantiateCount() {
+            return instantiations;
+        }
+
+        @Override
+        public long getIntervalReseedCount() {
+            return interval_reseeds;
+        }
+
+        @Override
+        public long getPredictionResistanceReseedCount() {
+            return prediction_resistance_reseeds;
+        }
+
+        @Override
+        public long getExplicitReseedCount() {
+            return explicit_reseeds;
+        }
+
+        @Override
+        public long getBackgroundReseedCount() {
+            return background_reseeds;
+        }
+
+        @Override
+        public long getEntropyCallCount() {
+            return entropy_calls;
+        }
+
+        @Override
+        public long getEntropyNanos() {
+            return entropy_nanos;
+        }
+
+        @Override
+        public long[] getEntropyLatencyHistogram() {
+            return entropy_latency.clone();
+        }
+
+        @Override
+        public Map<String, Long> getErrorCounts() {
+            return errors;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requests + ", bytes=" + bytes + ", instantiations=" + instantiations
+                    + ", reseeds(interval=" + interval_reseeds + ", prediction_resistance="
+                    + prediction_resistance_reseeds + ", explicit=" + explicit_reseeds + ", background="
+                    + background_reseeds + "), entropy_calls=" + entropy_calls + ", entropy_nanos="
+                    + entropy_nanos + ", errors=" + errors;
+        }
+    }
+}
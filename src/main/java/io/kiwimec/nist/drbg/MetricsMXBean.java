@@ -0,0 +1,67 @@
+package io.kiwimec.nist.drbg;
+
+import java.util.Map;
+
+/**
+ * The management interface of <code>Metrics</code>, also implemented by its
+ * snapshots. Counts are totals since the metrics were created.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Successful generate requests.
+     */
+    long getRequestCount();
+
+    /**
+     * Bytes returned by successful generate requests.
+     */
+    long getByteCount();
+
+    /**
+     * Successful instantiations.
+     */
+    long getInstantiateCount();
+
+    /**
+     * Reseeds made by a generate because the reseed_interval was reached.
+     */
+    long getIntervalReseedCount();
+
+    /**
+     * Reseeds made by a generate for prediction resistance.
+     */
+    long getPredictionResistanceReseedCount();
+
+    /**
+     * Reseeds requested through Reseed_function.
+     */
+    long getExplicitReseedCount();
+
+    /**
+     * Reseeds made in the background.
+     */
+    long getBackgroundReseedCount();
+
+    /**
+     * Calls to the entropy source.
+     */
+    long getEntropyCallCount();
+
+    /**
+     * Total time spent in the entropy source, in nanoseconds.
+     */
+    long getEntropyNanos();
+
+    /**
+     * Entropy call latencies. Bucket 0 counts calls under 1 µs and bucket i, for
+     * i > 0, calls from 2^(i-1) up to 2^i µs. The last bucket also counts
+     * everything slower.
+     */
+    long[] getEntropyLatencyHistogram();
+
+    /**
+     * Function calls that returned a status other than SUCCESS, by status name.
+     */
+    Map<String, Long> getErrorCounts();
+}
@@ -0,0 +1,257 @@
+package io.kiwimec.nist.drbg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.kiwimec.nist.util.Status;
+
+/**
+ * Reseeds instantiations ahead of need, off the generate path, so generation
+ * never pays for a mandatory reseed. Every <code>period</code> nanoseconds it
+ * looks at the reseed accounting of each registered instantiation against
+ * three policies, any of which may be disabled with 0:
+ *
+ * <ul>
+ * <li><code>max_requests</code>, generate requests since the last reseed,</li>
+ * <li><code>max_bytes</code>, bytes generated since the last reseed,</li>
+ * <li><code>max_age</code>, nanoseconds since the last reseed.</li>
+ * </ul>
+ *
+ * An instantiation is due once it reaches any limit. Each instantiation is
+ * given a phase in [0, 1) that lowers its limits by up to a quarter, spread by
+ * the golden ratio so instantiations that start together, such as the stripes
+ * of a MechanismPool, come due at different times instead of all at once.
+ *
+ * Due instantiations are reseeded most overdue first, at most
+ * <code>max_reseeds</code> per period, and only while idle: one whose state is
+ * locked by a caller is left for a later period. The limits should therefore
+ * sit comfortably below the reseed_interval of the algorithm.
+ *
+ * An instantiation that is uninstantiated is dropped.
+ */
+public final class ReseedScheduler implements AutoCloseable {
+
+    // Limits are lowered by up to this fraction, by phase.
+    private static final double SPREAD = 0.25;
+    // Fractional part of the golden ratio.
+    private static final double GOLDEN = 0.6180339887498949;
+
+    private final long max_requests;
+    private final long max_bytes;
+    private final long max_age;
+    private final int max_reseeds;
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<Entry>();
+    private final List<Pool> pools = new CopyOnWriteArrayList<Pool>();
+    // Registrations so far, each stripe of a pool counting as one.
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private final LongAdder reseeds = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reseed-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * One registered instantiation.
+     */
+    private static final class Entry {
+
+        final Mechanism mechanism;
+        final int state_handle;
+        final double scale;
+
+        Entry(Mechanism mechanism, int state_handle, int sequence) {
+            this.mechanism = mechanism;
+            this.state_handle = state_handle;
+            this.scale = 1.0 - SPREAD * ((sequence * GOLDEN) % 1.0);
+        }
+    }
+
+    /**
+     * One registered pool, its stripes numbered on from <code>sequence</code>.
+     */
+    private static final class Pool {
+
+        final MechanismPool pool;
+        final int sequence;
+
+        Pool(MechanismPool pool, int sequence) {
+            this.pool = pool;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * @param max_requests generate requests after which an instantiation is due, 0
+     *                     for no limit.
+     * @param max_bytes    bytes generated after which an instantiation is due, 0
+     *                     for no limit.
+     * @param max_age      nanoseconds after which an instantiation is due, 0 for
+     *                     no limit.
+     * @param period       nanoseconds between looks.
+     * @param max_reseeds  most reseeds in one period.
+     */
+    public ReseedScheduler(long max_requests, long max_bytes, long max_age, long period, int max_reseeds) {
+
+        if (max_requests < 0 || max_bytes < 0 || max_age < 0)
+            throw new IllegalArgumentException("Limits must not be negative");
+        if (max_requests == 0 && max_bytes == 0 && max_age == 0)
+            throw new IllegalArgumentException("At least one limit is required");
+        if (period <= 0 || max_reseeds < 1)
+            throw new IllegalArgumentException("Period and reseeds per period must be positive");
+
+        this.max_requests = max_requests;
+        this.max_bytes = max_bytes;
+        this.max_age = max_age;
+        this.max_reseeds = max_reseeds;
+        executor.scheduleWithFixedDelay(this::Period, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedules reseeds of the instantiation indicated by
+     * <code>state_handle</code>.
+     *
+     * @param mechanism
+     * @param state_handle
+     */
+    public void register(Mechanism mechanism, int state_handle) {
+
+        entries.add(new Entry(mechanism, state_handle, sequence.getAndIncrement()));
+    }
+
+    /**
+     * Schedules reseeds of every stripe of <code>pool</code>, as instantiated at
+     * each period.
+     *
+     * @param pool
+     */
+    public void register(MechanismPool pool) {
+
+        pools.add(new Pool(pool, sequence.getAndAdd(pool.getStripeCount())));
+    }
+
+    /**
+     * Number of reseeds performed.
+     */
+    public long getReseedCount() {
+        return reseeds.sum();
+    }
+
+    /**
+     * Number of reseeds that failed, normally for want of entropy, and of periods
+     * cut short by an exception. A failed instantiation is tried again at the
+     * next period.
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Stops scheduling. A reseed in progress completes.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Runs a Tick. A periodic task that throws is cancelled silently, so
+     * anything thrown is counted as a failure instead.
+     */
+    private void Period() {
+
+        try {
+            Tick();
+        } catch (RuntimeException e) {
+            failures.increment();
+        }
+    }
+
+    /**
+     * One period: finds the due and idle instantiations and reseeds the most
+     * overdue of them.
+     */
+    private void Tick() {
+
+        long now = System.nanoTime();
+        List<Entry> candidates = new ArrayList<Entry>();
+        List<Double> dues = new ArrayList<Double>();
+
+        for (Entry entry : entries) {
+            State internal_state = entry.mechanism.getState(entry.state_handle);
+            if (internal_state == null || internal_state.handle != entry.state_handle) {
+                entries.remove(entry);
+                continue;
+            }
+            Consider(entry, internal_state, now, candidates, dues);
+        }
+
+        // Pool stripes are looked up afresh each period as they may be
+        // uninstantiated and instantiated again.
+        for (Pool pool : pools) {
+            for (int stripe = 0; stripe < pool.pool.getStripeCount(); stripe++) {
+                int state_handle = pool.pool.getStateHandle(stripe);
+                if (state_handle == Mechanism.Invalid)
+                    continue;
+                Entry entry = new Entry(pool.pool.getMechanism(stripe), state_handle, pool.sequence + stripe);
+                State internal_state = entry.mechanism.getState(state_handle);
+                if (internal_state != null && internal_state.handle == state_handle)
+                    Consider(entry, internal_state, now, candidates, dues);
+            }
+        }
+
+        for (int n = 0; n < max_reseeds && !candidates.isEmpty(); n++) {
+            int most = 0;
+            for (int i = 1; i < dues.size(); i++)
+                if (dues.get(i) > dues.get(most))
+                    most = i;
+
+            Entry entry = candidates.remove(most);
+            dues.remove(most);
+            Status status;
+            try {
+                status = entry.mechanism.Background_reseed(entry.state_handle);
+            } catch (RuntimeException e) {
+                // An entropy source that throws must not end the schedule.
+                status = Status.ERROR_FLAG;
+            }
+            if (status == Status.SUCCESS)
+                reseeds.increment();
+            else
+                failures.increment();
+        }
+    }
+
+    /**
+     * Adds <code>entry</code> to the candidates if it is due and not in use.
+     */
+    private void Consider(Entry entry, State internal_state, long now, List<Entry> candidates, List<Double> dues) {
+
+        double due = 0;
+        if (max_requests > 0)
+            due = Math.max(due, (double) internal_state.reseed_counter / max_requests);
+        if (max_bytes > 0)
+            due = Math.max(due, (double) internal_state.reseed_bytes / max_bytes);
+        if (max_age > 0)
+            due = Math.max(due, (double) (now - internal_state.reseed_time) / max_age);
+        due /= entry.scale;
+
+        if (due < 1.0 || internal_state.lock.isLocked())
+            return;
+
+        candidates.add(entry);
+        dues.add(due);
+    }
+}
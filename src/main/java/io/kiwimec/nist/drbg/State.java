@@ -1,13 +1,15 @@
 package io.kiwimec.nist.drbg;
 
-import java.util.UUID;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class State {
 
     // The following are required by the DRBG Mechanism.
 
-    // Identifier for this State instance.
-    public final String handle = UUID.randomUUID().toString();
+    // Identifier for this State instance, assigned when the Mechanism stores it.
+    // Mechanism.Invalid until then and again once the state is erased.
+    public volatile int handle = Mechanism.Invalid;
     // Desired default for resistence setting.
     public boolean prediction_resistance_flag = false;
     // Internal reseed indicator.
@@ -15,4 +17,32 @@ public class State {
     // Agreed security strength set at initialisation. Required minimum entropy for
     // instantiate and reseed.
     public int security_strength = 0;
+    // Number of requests since instantiation or reseeding. Kept here rather than
+    // in each algorithm's working state so the mechanism can see how close the
+    // state is to its reseed_interval.
+    public long reseed_counter = 0;
+    // System.nanoTime() of the last instantiation or reseed.
+    public long reseed_time = 0;
+    // Bytes generated since instantiation or reseeding.
+    public long reseed_bytes = 0;
+    // A background reseed has been queued for this state and not yet applied.
+    boolean reseed_pending = false;
+
+    // Staging area for requests written to a buffer without a backing array.
+    // Only allocated if such a request is made.
+    byte[] returned_bits = null;
+
+    // Guards this state. Every function operating on the state holds it, so
+    // separate instantiations never contend with each other.
+    final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Overwrites the secret values of the state, and the scratch space that may
+     * hold copies of them, with zeros. Working states extend this for their own
+     * fields. Called with lock held once the state can no longer be used.
+     */
+    void erase() {
+        if (returned_bits != null)
+            Arrays.fill(returned_bits, (byte) 0);
+    }
 }
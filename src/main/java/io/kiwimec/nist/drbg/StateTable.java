@@ -0,0 +1,126 @@
+package io.kiwimec.nist.drbg;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The addressable internal states of a Mechanism. A state_handle is a compact
+ * int, the low bits select a slot and the high bits carry a generation for that
+ * slot so a handle is never valid again once its state has been erased, even if
+ * the slot is reused. A slot whose generations are used up is retired rather
+ * than wrapped, so no handle is ever issued twice. The table is exhausted after
+ * about 2^31 instantiations.
+ *
+ * Lookups are lock-free, a volatile read of the slot array and an acquire read
+ * of the slot. Adding and removing states is rare in comparison and is
+ * serialised by a single lock, which also covers growing the slot array.
+ */
+final class StateTable {
+
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int MAX_GENERATION = Integer.MAX_VALUE >>> SLOT_BITS;
+
+    // Slot array, replaced by a larger copy when full.
+    private volatile AtomicReferenceArray<State> slots = new AtomicReferenceArray<State>(16);
+
+    // Guarded by lock.
+    private final ReentrantLock lock = new ReentrantLock();
+    private int[] generations = new int[16];
+    private int[] free_slots = new int[16];
+    private int free_count = 0;
+    private int used_slots = 0;
+
+    /**
+     * Returns the state currently addressed by <code>state_handle</code>, or null
+     * if the handle is invalid or its state has been removed.
+     *
+     * @param state_handle
+     * @return
+     */
+    State get(int state_handle) {
+
+        AtomicReferenceArray<State> slots = this.slots;
+        int slot = state_handle & SLOT_MASK;
+        if (state_handle <= 0 || slot >= slots.length())
+            return null;
+
+        State state = slots.get(slot);
+        return state != null && state.handle == state_handle ? state : null;
+    }
+
+    /**
+     * Stores <code>state</code> in an empty slot and assigns it a handle.
+     *
+     * @param state
+     * @return the new state_handle, or <code>Mechanism.Invalid</code> if no empty
+     *         slot can be found.
+     */
+    int add(State state) {
+
+        lock.lock();
+        try {
+            int slot;
+            if (free_count > 0) {
+                slot = free_slots[--free_count];
+            } else if (used_slots <= SLOT_MASK) {
+                slot = used_slots++;
+            } else {
+                return Mechanism.Invalid;
+            }
+
+            AtomicReferenceArray<State> slots = this.slots;
+            if (slot >= slots.length()) {
+                AtomicReferenceArray<State> grown = new AtomicReferenceArray<State>(slots.length() << 1);
+                for (int i = 0; i < slots.length(); i++)
+                    grown.set(i, slots.get(i));
+                int[] generations = new int[grown.length()];
+                System.arraycopy(this.generations, 0, generations, 0, this.generations.length);
+                this.generations = generations;
+                this.slots = slots = grown;
+            }
+
+            if (generations[slot] == 0)
+                generations[slot] = 1;
+            state.handle = (generations[slot] << SLOT_BITS) | slot;
+            slots.set(slot, state);
+            return state.handle;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the slot addressed by <code>state_handle</code> and retires the
+     * handle.
+     *
+     * @param state_handle
+     * @return the removed state, or null if the handle was invalid.
+     */
+    State remove(int state_handle) {
+
+        lock.lock();
+        try {
+            State state = get(state_handle);
+            if (state == null)
+                return null;
+
+            int slot = state_handle & SLOT_MASK;
+            slots.set(slot, null);
+            // A wrapped generation would reissue an old handle, so the slot is
+            // retired instead.
+            if (generations[slot] == MAX_GENERATION)
+                return state;
+            generations[slot]++;
+            if (free_count == free_slots.length) {
+                int[] free_slots = new int[this.free_slots.length << 1];
+                System.arraycopy(this.free_slots, 0, free_slots, 0, free_count);
+                this.free_slots = free_slots;
+            }
+            free_slots[free_count++] = slot;
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
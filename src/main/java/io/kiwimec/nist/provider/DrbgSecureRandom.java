@@ -0,0 +1,260 @@
+package io.kiwimec.nist.provider;
+
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.security.SecureRandomParameters;
+import java.security.SecureRandomSpi;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import io.kiwimec.nist.drbg.Algorithm;
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.source.Entropy;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * A SecureRandomSpi over a <code>Mechanism</code>. The mechanism holds one
+ * instantiation per stripe, a power of two at least the number of processors,
+ * and each calling thread is hashed to a stripe. The mechanism locks each
+ * internal state separately, so threads on different stripes never contend and
+ * the SPI can be registered as thread safe.
+ *
+ * Stripes are instantiated on first use. nextBytes writes straight into the
+ * caller's array, in as many Generate_function calls as
+ * max_number_of_bits_per_request requires. setSeed is mixed into every
+ * instantiated stripe as additional_input, it supplements the state and never
+ * replaces it.
+ *
+ * The mechanism's entropy is drawn from the SUN provider's DRBG so that
+ * installing this provider ahead of it cannot make the entropy source recurse
+ * into itself.
+ *
+ * It is not serializable, and neither is a SecureRandom over it. The
+ * instantiations live in the mechanism and must never be written out.
+ */
+public final class DrbgSecureRandom extends SecureRandomSpi {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient Mechanism mechanism;
+    private final transient Entropy entropy_source;
+
+    // Instantiation parameters shared by every stripe.
+    private final int security_strength;
+    private final boolean prediction_resistance_flag;
+    private final byte[] personalization_string;
+
+    // One state_handle per stripe, Mechanism.Invalid until first used.
+    private final transient AtomicIntegerArray state_handles;
+    private final int stripe_mask;
+
+    // Whole bytes per Generate_function call.
+    private final int max_bytes_per_request;
+
+    /**
+     * An SPI with the highest security strength the algorithm supports and no
+     * prediction resistance.
+     *
+     * @param drbg_algorithm
+     */
+    public DrbgSecureRandom(Algorithm drbg_algorithm) {
+
+        this(drbg_algorithm, null);
+    }
+
+    /**
+     * @param drbg_algorithm
+     * @param parameters     null, or a <code>DrbgParameters.Instantiation</code>
+     *                       selecting the strength, prediction resistance and
+     *                       personalization string.
+     */
+    public DrbgSecureRandom(Algorithm drbg_algorithm, SecureRandomParameters parameters) {
+
+        super(parameters);
+
+        try {
+            entropy_source = new SecureRandomEntropy(SecureRandom.getInstance("DRBG", "SUN"));
+        } catch (NoSuchAlgorithmException | NoSuchProviderException e) {
+            throw new ProviderException("No entropy source available", e);
+        }
+        mechanism = new Mechanism(entropy_source, new Nonce(), drbg_algorithm);
+
+        if (parameters == null) {
+            security_strength = mechanism.getHighestSupportedSecurityStrength();
+            prediction_resistance_flag = false;
+            personalization_string = null;
+        } else if (parameters instanceof DrbgParameters.Instantiation) {
+            DrbgParameters.Instantiation instantiation = (DrbgParameters.Instantiation) parameters;
+            security_strength = instantiation.getStrength() < 0
+                    ? mechanism.getHighestSupportedSecurityStrength()
+                    : instantiation.getStrength();
+            prediction_resistance_flag = instantiation.getCapability().supportsPredictionResistance();
+            personalization_string = instantiation.getPersonalizationString();
+        } else {
+            throw new IllegalArgumentException("Unsupported parameters " + parameters.getClass().getName());
+        }
+        if (security_strength > mechanism.getHighestSupportedSecurityStrength())
+            throw new IllegalArgumentException("Security strength " + security_strength + " is not supported");
+
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1;
+        state_handles = new AtomicIntegerArray(stripes);
+        stripe_mask = stripes - 1;
+        max_bytes_per_request = mechanism.getMaxNumberOfBitsPerRequest() >>> 3;
+    }
+
+    @Override
+    protected void engineNextBytes(byte[] bytes) {
+
+        Generate(bytes, security_strength, false, null);
+    }
+
+    @Override
+    protected void engineNextBytes(byte[] bytes, SecureRandomParameters parameters) {
+
+        if (!(parameters instanceof DrbgParameters.NextBytes))
+            throw new IllegalArgumentException("Unsupported parameters " + parameters);
+
+        DrbgParameters.NextBytes next_bytes = (DrbgParameters.NextBytes) parameters;
+        int requested_security_strength = next_bytes.getStrength() < 0 ? security_strength
+                : next_bytes.getStrength();
+        byte[] additional_input = next_bytes.getAdditionalInput();
+
+        Generate(bytes, requested_security_strength, next_bytes.getPredictionResistance(),
+                additional_input == null ? null : ByteBuffer.wrap(additional_input));
+    }
+
+    @Override
+    protected void engineReseed(SecureRandomParameters parameters) {
+
+        boolean prediction_resistance_request = false;
+        ByteBuffer additional_input = null;
+        if (parameters instanceof DrbgParameters.Reseed) {
+            DrbgParameters.Reseed reseed = (DrbgParameters.Reseed) parameters;
+            prediction_resistance_request = reseed.getPredictionResistance();
+            if (reseed.getAdditionalInput() != null)
+                additional_input = ByteBuffer.wrap(reseed.getAdditionalInput());
+        } else if (parameters != null) {
+            throw new IllegalArgumentException("Unsupported parameters " + parameters);
+        }
+
+        check(mechanism.Reseed_function(stateHandle(), prediction_resistance_request, additional_input));
+    }
+
+    /**
+     * Mixes <code>seed</code> into every instantiated stripe as additional_input
+     * to an empty generate, instantiating the caller's stripe first if need be.
+     * Seeds longer than max_additional_input_length are mixed in pieces.
+     */
+    @Override
+    protected void engineSetSeed(byte[] seed) {
+
+        stateHandle();
+        int piece = Math.max(1, mechanism.getMaxAdditionalInputLength() >>> 3);
+        byte[] none = new byte[0];
+
+        for (int stripe = 0; stripe <= stripe_mask; stripe++) {
+            int state_handle = state_handles.get(stripe);
+            if (state_handle == Mechanism.Invalid)
+                continue;
+            for (int offset = 0; offset < seed.length; offset += piece) {
+                ByteBuffer additional_input = ByteBuffer.wrap(seed, offset, Math.min(piece, seed.length - offset));
+                check(mechanism.Generate_function(state_handle, 0, 0, false, additional_input, none, 0));
+            }
+        }
+    }
+
+    @Override
+    protected byte[] engineGenerateSeed(int numBytes) {
+
+        Tuple2<Status, byte[]> entropy_input = entropy_source.Get_entropy_input(security_strength,
+                numBytes << 3, numBytes << 3, true);
+        check(entropy_input.first);
+        return entropy_input.second;
+    }
+
+    @Override
+    protected SecureRandomParameters engineGetParameters() {
+
+        return DrbgParameters.instantiation(security_strength,
+                prediction_resistance_flag ? DrbgParameters.Capability.PR_AND_RESEED
+                        : DrbgParameters.Capability.RESEED_ONLY,
+                personalization_string == null ? null : personalization_string.clone());
+    }
+
+    @Override
+    public String toString() {
+
+        return "DrbgSecureRandom(" + security_strength + ", " + (stripe_mask + 1) + " stripes)";
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Fills <code>bytes</code> in max_number_of_bits_per_request chunks from the
+     * calling thread's stripe. The additional_input only goes with the first
+     * chunk.
+     */
+    private void Generate(byte[] bytes, int requested_security_strength, boolean prediction_resistance_request,
+            ByteBuffer additional_input) {
+
+        int state_handle = stateHandle();
+        for (int offset = 0; offset < bytes.length;) {
+            int length = Math.min(max_bytes_per_request, bytes.length - offset);
+            check(mechanism.Generate_function(state_handle, length << 3, requested_security_strength,
+                    prediction_resistance_request, additional_input, bytes, offset));
+            additional_input = null;
+            offset += length;
+        }
+    }
+
+    /**
+     * The state_handle of the calling thread's stripe, instantiating it on first
+     * use. A thread that loses the race to instantiate a stripe discards its own
+     * instantiation.
+     */
+    private int stateHandle() {
+
+        long id = Thread.currentThread().getId();
+        int stripe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & stripe_mask;
+
+        int state_handle = state_handles.get(stripe);
+        if (state_handle != Mechanism.Invalid)
+            return state_handle;
+
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(security_strength,
+                prediction_resistance_flag,
+                personalization_string == null ? null : ByteBuffer.wrap(personalization_string));
+        check(instantiated.first);
+
+        if (state_handles.compareAndSet(stripe, Mechanism.Invalid, instantiated.second))
+            return instantiated.second;
+
+        mechanism.Uninstantiate_function(instantiated.second);
+        return state_handles.get(stripe);
+    }
+
+    private static void check(Status status) {
+
+        if (status != Status.SUCCESS)
+            throw new ProviderException("DRBG failed with " + status);
+    }
+
+    private void writeObject(ObjectOutputStream out) throws NotSerializableException {
+
+        throw new NotSerializableException(DrbgSecureRandom.class.getName());
+    }
+
+    private void readObject(ObjectInputStream in) throws NotSerializableException {
+
+        throw new NotSerializableException(DrbgSecureRandom.class.getName());
+    }
+}
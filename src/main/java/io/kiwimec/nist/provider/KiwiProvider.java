@@ -0,0 +1,61 @@
+package io.kiwimec.nist.provider;
+
+import java.security.Provider;
+import java.security.SecureRandomParameters;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import io.kiwimec.nist.drbg.AesCtrDf;
+import io.kiwimec.nist.drbg.Algorithm;
+import io.kiwimec.nist.drbg.HashDrbg;
+import io.kiwimec.nist.drbg.HmacDrbg;
+
+/**
+ * A JCA provider exposing the DRBG mechanisms as SecureRandom algorithms, so
+ * code that only talks to <code>SecureRandom</code> can use them.
+ *
+ * <pre>
+ * Security.addProvider(new KiwiProvider());
+ * SecureRandom random = SecureRandom.getInstance("KIWI-CTR-DRBG");
+ * </pre>
+ *
+ * Every algorithm is registered with <code>ThreadSafe=true</code>, so the JDK
+ * calls into it without its own lock. See <code>DrbgSecureRandom</code>.
+ */
+public final class KiwiProvider extends Provider {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String NAME = "KIWI";
+
+    public KiwiProvider() {
+
+        super(NAME, "1", "NIST SP 800-90A DRBG mechanisms (CTR_DRBG, Hash_DRBG, HMAC_DRBG)");
+
+        putService(new DrbgService(this, "KIWI-CTR-DRBG", () -> new AesCtrDf(AesCtrDf.Aes.AES_256, true)));
+        putService(new DrbgService(this, "KIWI-HASH-DRBG", () -> new HashDrbg(HashDrbg.Hash.SHA_512, true)));
+        putService(new DrbgService(this, "KIWI-HMAC-DRBG", () -> new HmacDrbg(HmacDrbg.Hash.SHA_256, true)));
+    }
+
+    /**
+     * A SecureRandom service that builds its SecureRandomSpi directly rather than
+     * by reflection.
+     */
+    private static final class DrbgService extends Provider.Service {
+
+        private final Supplier<Algorithm> drbg_algorithm;
+
+        DrbgService(Provider provider, String algorithm, Supplier<Algorithm> drbg_algorithm) {
+
+            super(provider, "SecureRandom", algorithm, DrbgSecureRandom.class.getName(), null,
+                    Map.of("ThreadSafe", "true"));
+            this.drbg_algorithm = drbg_algorithm;
+        }
+
+        @Override
+        public Object newInstance(Object parameter) {
+
+            return new DrbgSecureRandom(drbg_algorithm.get(), (SecureRandomParameters) parameter);
+        }
+    }
+}
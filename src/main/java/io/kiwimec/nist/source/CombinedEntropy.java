@@ -0,0 +1,214 @@
+package io.kiwimec.nist.source;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Entropy from several independent sources conditioned together, as SP 800-90C
+ * combines entropy sources: the outputs are concatenated and passed through
+ * the vetted conditioning function, here Hash_df over SHA-512. The result is at
+ * least as unpredictable as the best of the inputs that went into it. Every
+ * source is asked for n + 64 bits for n bits of output, the margin SP 800-90C
+ * asks of full entropy output, so the result can seed a CTR_DRBG without a
+ * derivation function.
+ *
+ * Every source is asked in parallel and given <code>timeout</code> nanoseconds
+ * to answer. A request succeeds when at least <code>required</code> sources
+ * delivered in time, so a stalled or failed source degrades the input rather
+ * than blocking or failing the DRBG. A source still busy with an earlier
+ * request is not asked again until it answers, and a late answer is erased.
+ *
+ * Below <code>required</code> deliveries the request fails with
+ * CATASTROPHIC_ERROR_FLAG if any source reported it, otherwise ERROR_FLAG.
+ */
+public class CombinedEntropy implements Entropy, AutoCloseable {
+
+    private static final long DEFAULT_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // Extra input entropy SP 800-90C asks of conditioned full entropy output.
+    private static final int FULL_ENTROPY_MARGIN = 64;
+
+    private final Entropy[] sources;
+    private final int required;
+    private final long timeout;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "combined-entropy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The request in flight from each source, guarded by lock.
+    private final List<CompletableFuture<Tuple2<Status, byte[]>>> pending;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Combines <code>sources</code>, any one of which delivering within 100 ms is
+     * enough.
+     *
+     * @param sources
+     */
+    public CombinedEntropy(Entropy... sources) {
+
+        this(1, DEFAULT_TIMEOUT, sources);
+    }
+
+    /**
+     * @param required number of sources that must deliver for a request to
+     *                 succeed.
+     * @param timeout  nanoseconds each request waits for the sources.
+     * @param sources
+     */
+    public CombinedEntropy(int required, long timeout, Entropy... sources) {
+
+        if (sources.length == 0 || required < 1 || required > sources.length)
+            throw new IllegalArgumentException("Need at least one source and from 1 to " + sources.length
+                    + " required");
+
+        this.sources = sources.clone();
+        this.required = required;
+        this.timeout = timeout;
+        this.pending = new ArrayList<CompletableFuture<Tuple2<Status, byte[]>>>(
+                Collections.nCopies(sources.length, null));
+    }
+
+    @Override
+    public Tuple2<Status, byte[]> Get_entropy_input(
+            int requested_instantiation_security_strength,
+            int min_length,
+            int max_length,
+            boolean prediction_resistance_request) {
+
+        // Each source is asked for 64 bits more than is returned, so the output of
+        // Hash_df has full entropy even when only one source delivers.
+        int input_length = min_length + FULL_ENTROPY_MARGIN;
+        List<CompletableFuture<Tuple2<Status, byte[]>>> requests = Ask(source -> source.Get_entropy_input(
+                requested_instantiation_security_strength, input_length, Math.max(max_length, input_length),
+                prediction_resistance_request));
+
+        List<byte[]> inputs = new ArrayList<byte[]>(sources.length);
+        Status failure = Status.ERROR_FLAG;
+        long deadline = System.nanoTime() + timeout;
+        for (CompletableFuture<Tuple2<Status, byte[]>> request : requests) {
+            Tuple2<Status, byte[]> entropy_input = Await(request, deadline);
+            if (entropy_input == null)
+                continue;
+            if (entropy_input.first == Status.SUCCESS)
+                inputs.add(entropy_input.second);
+            else if (entropy_input.first == Status.CATASTROPHIC_ERROR_FLAG)
+                failure = Status.CATASTROPHIC_ERROR_FLAG;
+        }
+
+        try {
+            if (inputs.size() < required)
+                return new Tuple2<Status, byte[]>(failure, null);
+
+            return new Tuple2<Status, byte[]>(Status.SUCCESS,
+                    Conditioning.Hash_df(inputs.toArray(new byte[inputs.size()][]), min_length));
+        } finally {
+            for (byte[] input : inputs)
+                Arrays.fill(input, (byte) 0);
+        }
+    }
+
+    /**
+     * Runs the start-up tests of the sources in parallel, waiting at most the
+     * timeout. Fails only once too few sources can still pass.
+     */
+    @Override
+    public Status Startup_test() {
+
+        List<CompletableFuture<Tuple2<Status, byte[]>>> tests = Ask(
+                source -> new Tuple2<Status, byte[]>(source.Startup_test(), null));
+
+        int possible = 0;
+        Status failure = Status.ERROR_FLAG;
+        long deadline = System.nanoTime() + timeout;
+        for (CompletableFuture<Tuple2<Status, byte[]>> test : tests) {
+            Tuple2<Status, byte[]> result = Await(test, deadline);
+            if (result == null || result.first == Status.SUCCESS)
+                possible++;
+            else if (result.first == Status.CATASTROPHIC_ERROR_FLAG)
+                failure = Status.CATASTROPHIC_ERROR_FLAG;
+        }
+        return possible >= required ? Status.SUCCESS : failure;
+    }
+
+    /**
+     * Stops the threads that wait on the sources.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // ----- Local implementation
+
+    private interface Call {
+        Tuple2<Status, byte[]> apply(Entropy source);
+    }
+
+    /**
+     * Starts <code>call</code> on every source that is not still busy. The
+     * returned list holds null for a busy source.
+     */
+    private List<CompletableFuture<Tuple2<Status, byte[]>>> Ask(Call call) {
+
+        List<CompletableFuture<Tuple2<Status, byte[]>>> requests;
+        requests = new ArrayList<CompletableFuture<Tuple2<Status, byte[]>>>(sources.length);
+        lock.lock();
+        try {
+            for (int i = 0; i < sources.length; i++) {
+                CompletableFuture<Tuple2<Status, byte[]>> request = pending.get(i);
+                if (request != null && !request.isDone()) {
+                    requests.add(null);
+                    continue;
+                }
+                Entropy source = sources[i];
+                request = CompletableFuture.supplyAsync(() -> call.apply(source), executor);
+                pending.set(i, request);
+                requests.add(request);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return requests;
+    }
+
+    /**
+     * The result of <code>request</code> if it arrives by <code>deadline</code>,
+     * otherwise null and a late result is erased when it arrives.
+     */
+    private static Tuple2<Status, byte[]> Await(CompletableFuture<Tuple2<Status, byte[]>> request, long deadline) {
+
+        if (request == null)
+            return null;
+
+        try {
+            return request.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            request.thenAccept(late -> {
+                if (late.second != null)
+                    Arrays.fill(late.second, (byte) 0);
+            });
+            return null;
+        } catch (ExecutionException e) {
+            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
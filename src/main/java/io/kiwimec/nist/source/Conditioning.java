@@ -0,0 +1,92 @@
+package io.kiwimec.nist.source;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/*
+10.3.1 Derivation Function Using a Hash Function (Hash_df)
+
+The hash-based derivation function hashes an input string and returns the requested number of bits.
+
+Hash_df (input_string, no_of_bits_to_return):
+
+1. temp = the Null string.
+2. len = ⌈no_of_bits_to_return / outlen⌉.
+3. counter = 0x01. Comment: An 8-bit binary value representing the integer "1".
+4. For i = 1 to len do
+   4.1 temp = temp || Hash (counter || no_of_bits_to_return || input_string).
+   4.2 counter = counter + 1.
+5. requested_bits = leftmost (temp, no_of_bits_to_return).
+6. Return (SUCCESS, requested_bits).
+
+SP 800-90C allows Hash_df as the vetted conditioning function of an entropy source.
+*/
+
+/**
+ * The conditioning function shared by the sources that compress raw or
+ * combined inputs, Hash_df over SHA-512.
+ */
+final class Conditioning {
+
+    private static final int OUTLEN = 64;
+
+    private Conditioning() {
+    }
+
+    /**
+     * Hash_df (input_string, no_of_bits_to_return) where input_string is the
+     * concatenation of <code>inputs</code>, null entries skipped, and the bits
+     * are returned in whole bytes.
+     *
+     * @param inputs
+     * @param no_of_bits_to_return
+     * @return
+     */
+    static byte[] Hash_df(byte[][] inputs, int no_of_bits_to_return) {
+
+        MessageDigest hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // 1. temp = the Null string.
+        byte[] requested_bits = new byte[(no_of_bits_to_return + 7) >>> 3];
+        byte[] temp = new byte[OUTLEN];
+        byte[] header = { 0, (byte) (no_of_bits_to_return >>> 24), (byte) (no_of_bits_to_return >>> 16),
+                (byte) (no_of_bits_to_return >>> 8), (byte) no_of_bits_to_return };
+
+        try {
+            // 2. len = ⌈no_of_bits_to_return / outlen⌉.
+            // 3. counter = 0x01.
+            // 4. For i = 1 to len do
+            for (int counter = 1, offset = 0; offset < requested_bits.length; counter++, offset += OUTLEN) {
+
+                // 4.1 temp = temp || Hash (counter || no_of_bits_to_return || input_string).
+                header[0] = (byte) counter;
+                hash.update(header);
+                for (byte[] input : inputs)
+                    if (input != null)
+                        hash.update(input);
+                hash.digest(temp, 0, OUTLEN);
+
+                // 5. requested_bits = leftmost (temp, no_of_bits_to_return).
+                System.arraycopy(temp, 0, requested_bits, offset, Math.min(OUTLEN, requested_bits.length - offset));
+            }
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Arrays.fill(temp, (byte) 0);
+        }
+
+        // Clear the bits past no_of_bits_to_return in the last byte.
+        if ((no_of_bits_to_return & 7) != 0)
+            requested_bits[requested_bits.length - 1] &= (byte) (0xFF << (8 - (no_of_bits_to_return & 7)));
+
+        // 6. Return (SUCCESS, requested_bits).
+        return requested_bits;
+    }
+}
@@ -0,0 +1,189 @@
+package io.kiwimec.nist.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Entropy read from a kernel random device, <code>/dev/urandom</code> by
+ * default, through a FileChannel. Ordinary requests are cut from a direct
+ * buffer filled by one large read, 64 KiB by default, so a read system call
+ * serves well over a thousand instantiations or reseeds. Bytes are erased from
+ * the buffer as they are handed out.
+ *
+ * A prediction resistant request must not be served from output read ahead of
+ * it, so it reads the device directly.
+ *
+ * Every block is health tested on its way out.
+ */
+public class DeviceEntropy implements Entropy, AutoCloseable {
+
+    /**
+     * The non-blocking device.
+     */
+    public static final Path URANDOM = Paths.get("/dev/urandom");
+
+    /**
+     * The device that blocks until the kernel pool is initialised.
+     */
+    public static final Path RANDOM = Paths.get("/dev/random");
+
+    private static final int DEFAULT_BUFFER_LENGTH = 1 << 16;
+
+    // Written over consumed bytes.
+    private static final byte[] ZEROS = new byte[512];
+
+    private final FileChannel channel;
+    private final HealthTest health_test;
+
+    // Read ahead output, consumed from its position to its limit, guarded by lock.
+    private final ByteBuffer buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Reads <code>/dev/urandom</code> 64 KiB at a time.
+     *
+     * @throws IOException if the device cannot be opened.
+     */
+    public DeviceEntropy() throws IOException {
+
+        this(URANDOM, DEFAULT_BUFFER_LENGTH);
+    }
+
+    /**
+     * @param device        the random device.
+     * @param buffer_length bytes read ahead at a time.
+     * @throws IOException if the device cannot be opened.
+     */
+    public DeviceEntropy(Path device, int buffer_length) throws IOException {
+
+        this(device, buffer_length, new HealthTest());
+    }
+
+    /**
+     * @param device        the random device.
+     * @param buffer_length bytes read ahead at a time.
+     * @param health_test
+     * @throws IOException if the device cannot be opened.
+     */
+    public DeviceEntropy(Path device, int buffer_length, HealthTest health_test) throws IOException {
+
+        if (buffer_length < 1)
+            throw new IllegalArgumentException("Buffer length must be positive");
+
+        this.channel = FileChannel.open(device, StandardOpenOption.READ);
+        this.health_test = health_test;
+        this.buffer = ByteBuffer.allocateDirect(buffer_length);
+        this.buffer.limit(0);
+    }
+
+    @Override
+    public Tuple2<Status, byte[]> Get_entropy_input(
+            int requested_instantiation_security_strength,
+            int min_length,
+            int max_length,
+            boolean prediction_resistance_request) {
+
+        Status status = Startup_test();
+        if (status != Status.SUCCESS)
+            return new Tuple2<Status, byte[]>(status, null);
+
+        byte[] entropy_input = new byte[(min_length + 7) >>> 3];
+        lock.lock();
+        try {
+            if (prediction_resistance_request)
+                readFully(ByteBuffer.wrap(entropy_input));
+            else
+                take(entropy_input);
+        } catch (IOException e) {
+            Arrays.fill(entropy_input, (byte) 0);
+            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+        } finally {
+            lock.unlock();
+        }
+
+        status = health_test.Continuous_test(entropy_input, 0, entropy_input.length);
+        if (status != Status.SUCCESS) {
+            Arrays.fill(entropy_input, (byte) 0);
+            return new Tuple2<Status, byte[]>(status, null);
+        }
+        return new Tuple2<Status, byte[]>(Status.SUCCESS, entropy_input);
+    }
+
+    @Override
+    public Status Startup_test() {
+
+        if (health_test.isStarted())
+            return health_test.getStatus();
+
+        byte[] samples = new byte[HealthTest.STARTUP_SAMPLES];
+        lock.lock();
+        try {
+            readFully(ByteBuffer.wrap(samples));
+            return health_test.Startup_test(samples);
+        } catch (IOException e) {
+            return Status.ERROR_FLAG;
+        } finally {
+            lock.unlock();
+            Arrays.fill(samples, (byte) 0);
+        }
+    }
+
+    /**
+     * Closes the device and erases the read ahead output.
+     */
+    @Override
+    public void close() throws IOException {
+
+        lock.lock();
+        try {
+            buffer.clear();
+            while (buffer.hasRemaining())
+                buffer.put((byte) 0);
+            buffer.limit(0);
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Copies the next bytes of read ahead output into <code>target</code>,
+     * erasing them and refilling the buffer as it runs out. Called with the lock
+     * held.
+     */
+    private void take(byte[] target) throws IOException {
+
+        for (int offset = 0; offset < target.length;) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                readFully(buffer);
+                buffer.flip();
+            }
+
+            int length = Math.min(Math.min(buffer.remaining(), target.length - offset), ZEROS.length);
+            int position = buffer.position();
+            buffer.get(target, offset, length);
+            buffer.position(position);
+            buffer.put(ZEROS, 0, length);
+            offset += length;
+        }
+    }
+
+    private void readFully(ByteBuffer target) throws IOException {
+
+        while (target.hasRemaining())
+            if (channel.read(target) < 0)
+                throw new IOException("Random device reached end of file");
+    }
+}
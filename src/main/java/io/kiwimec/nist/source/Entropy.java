@@ -1,37 +1,53 @@
 package io.kiwimec.nist.source;
 
-import java.security.SecureRandom;
-
 import io.kiwimec.nist.util.Status;
 import io.kiwimec.nist.util.Tuple2;
 
-public class Entropy {
-
-        private final SecureRandom random = new SecureRandom();
-
-        // (status, entropy_input) = Get_entropy_input (security_strength, min_length,
-        // max_length, prediction_resistance_request).
-        //
-        // Comment: status indications other than SUCCESS could be ERROR_FLAG or
-        // CATASTROPHIC_ERROR_FLAG, in which case, the status is returned to the
-        // consuming application to handle. The Get_entropy_input call could return a
-        // status of ERROR_FLAG to indicate that entropy is currently unavailable, and
-        // could return CATASTROPHIC_ERROR_FLAG to indicate that an entropy source
-        // failed.
-        public Tuple2<Status, byte[]> Get_entropy_input(
-                        int requested_instantiation_security_strength,
-                        int min_length,
-                        int max_length,
-                        boolean prediction_resistance_request) {
+/**
+ * A source of entropy input for the DRBG mechanisms. Implementations must be
+ * thread safe, a source is shared by every state of a Mechanism and often by
+ * several Mechanisms.
+ *
+ * <ul>
+ * <li><code>SecureRandomEntropy</code> draws from a SecureRandom.</li>
+ * <li><code>DeviceEntropy</code> reads the kernel's random device in large
+ * chunks.</li>
+ * <li><code>JitterEntropy</code> conditions CPU timing jitter.</li>
+ * <li><code>CombinedEntropy</code> conditions the outputs of several sources
+ * together.</li>
+ * <li><code>EntropyPool</code> and <code>SeedFile</code> wrap another
+ * source.</li>
+ * </ul>
+ */
+public interface Entropy {
 
-                // If we want prediction resistence force the use of the reseed algorithm to
-                // involve the hardware.
-                if (prediction_resistance_request == true)
-                        return new Tuple2<Status, byte[]>(Status.SUCCESS, random.generateSeed(max_length));
+    // (status, entropy_input) = Get_entropy_input (security_strength, min_length,
+    // max_length, prediction_resistance_request).
+    //
+    // Comment: status indications other than SUCCESS could be ERROR_FLAG or
+    // CATASTROPHIC_ERROR_FLAG, in which case, the status is returned to the
+    // consuming application to handle. The Get_entropy_input call could return a
+    // status of ERROR_FLAG to indicate that entropy is currently unavailable, and
+    // could return CATASTROPHIC_ERROR_FLAG to indicate that an entropy source
+    // failed.
+    //
+    // NOTE a. The lengths are in bits, the entropy is returned in whole bytes. A
+    // full entropy source meets the request with min_length bits, max_length is
+    // only an upper bound.
+    Tuple2<Status, byte[]> Get_entropy_input(
+            int requested_instantiation_security_strength,
+            int min_length,
+            int max_length,
+            boolean prediction_resistance_request);
 
-                // Otherwise we simply want the next amount of random data.
-                byte bytes[] = new byte[max_length];
-                random.nextBytes(bytes);
-                return new Tuple2<Status, byte[]>(Status.SUCCESS, bytes);
-        }
+    /**
+     * Runs the SP 800-90B start-up test, once per source. Later calls return the
+     * current health status. A source without health tests of its own, or one
+     * wrapping another, may leave it to the sources it draws from.
+     *
+     * @return SUCCESS or CATASTROPHIC_ERROR_FLAG.
+     */
+    default Status Startup_test() {
+        return Status.SUCCESS;
+    }
 }
@@ -0,0 +1,295 @@
+package io.kiwimec.nist.source;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * An entropy source that serves Get_entropy_input from a bounded ring of
+ * entropy blocks gathered ahead of time by a background producer. The producer
+ * refills the ring up to <code>high_watermark</code> blocks whenever it drops to
+ * <code>low_watermark</code>, so instantiate and prediction resistant generate
+ * calls are normally served from memory.
+ *
+ * Every block is gathered with prediction resistance from the underlying
+ * source, so a pooled block satisfies either kind of request. A block equal to
+ * its predecessor fails the continuous test and puts the pool into the
+ * CATASTROPHIC_ERROR_FLAG state.
+ *
+ * The producer is started by <code>start</code>, not by the constructor, so it
+ * never sees a partly constructed pool. Until then every request is a stall.
+ *
+ * If the ring cannot cover a request the shortfall is taken directly from the
+ * underlying source and counted as a stall. If the underlying source throws,
+ * the producer stops and the pool fails every request with ERROR_FLAG, as it
+ * does once closed.
+ */
+public class EntropyPool implements Entropy, AutoCloseable {
+
+    private final Entropy source;
+    private final int block_length;
+    private final int low_watermark;
+    private final int high_watermark;
+
+    // Ring of blocks, the pool's failure status and the producer thread, guarded
+    // by lock.
+    private final byte[][] blocks;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition refill = lock.newCondition();
+    private int head = 0;
+    private int depth = 0;
+    private Status failure = Status.SUCCESS;
+    private Thread producer = null;
+
+    // Producer only.
+    private final byte[] previous_block;
+    private boolean has_previous_block = false;
+
+    private final AtomicLong stalls = new AtomicLong();
+    private final AtomicLong served = new AtomicLong();
+
+    /**
+     * Pools 384-bit blocks, enough for one seedlen of AES-256 CTR_DRBG, refilling
+     * from 16 to 64 blocks.
+     *
+     * @param source
+     */
+    public EntropyPool(Entropy source) {
+
+        this(source, 384, 16, 64);
+    }
+
+    /**
+     * @param source         the entropy source the pool is filled from.
+     * @param block_length   bits per pooled block.
+     * @param low_watermark  depth at or below which the producer refills.
+     * @param high_watermark capacity of the pool in blocks.
+     */
+    public EntropyPool(Entropy source, int block_length, int low_watermark, int high_watermark) {
+
+        if (block_length < 8 || low_watermark < 0 || high_watermark < 1 || low_watermark >= high_watermark)
+            throw new IllegalArgumentException("Invalid entropy pool configuration");
+
+        this.source = source;
+        this.block_length = (block_length + 7) >>> 3;
+        this.low_watermark = low_watermark;
+        this.high_watermark = high_watermark;
+        this.blocks = new byte[high_watermark][this.block_length];
+        this.previous_block = new byte[this.block_length];
+    }
+
+    /**
+     * Starts the producer, once. A closed pool is not started again.
+     *
+     * @return this pool.
+     */
+    public EntropyPool start() {
+
+        lock.lock();
+        try {
+            if (producer == null && failure == Status.SUCCESS) {
+                producer = new Thread(this::Produce, "entropy-pool");
+                producer.setDaemon(true);
+                producer.start();
+            }
+            return this;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Tuple2<Status, byte[]> Get_entropy_input(
+            int requested_instantiation_security_strength,
+            int min_length,
+            int max_length,
+            boolean prediction_resistance_request) {
+
+        byte[] entropy_input = new byte[(min_length + 7) >>> 3];
+        int offset = 0;
+
+        lock.lock();
+        try {
+            if (failure != Status.SUCCESS)
+                return new Tuple2<Status, byte[]>(failure, null);
+
+            while (offset < entropy_input.length && depth > 0) {
+                byte[] block = blocks[head];
+                int length = Math.min(block_length, entropy_input.length - offset);
+                System.arraycopy(block, 0, entropy_input, offset, length);
+                Arrays.fill(block, (byte) 0);
+                head = (head + 1) % high_watermark;
+                depth--;
+                offset += length;
+            }
+
+            if (depth <= low_watermark)
+                refill.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        if (offset < entropy_input.length) {
+            stalls.incrementAndGet();
+            Tuple2<Status, byte[]> shortfall = source.Get_entropy_input(
+                    requested_instantiation_security_strength,
+                    (entropy_input.length - offset) << 3,
+                    (entropy_input.length - offset) << 3,
+                    true);
+            if (shortfall.first != Status.SUCCESS) {
+                Arrays.fill(entropy_input, (byte) 0);
+                return new Tuple2<Status, byte[]>(shortfall.first, null);
+            }
+            System.arraycopy(shortfall.second, 0, entropy_input, offset, entropy_input.length - offset);
+            Arrays.fill(shortfall.second, (byte) 0);
+        }
+
+        served.incrementAndGet();
+        return new Tuple2<Status, byte[]>(Status.SUCCESS, entropy_input);
+    }
+
+    /**
+     * The pooled blocks are tested by the underlying source, so its start-up test
+     * stands for the pool's.
+     */
+    @Override
+    public Status Startup_test() {
+        return source.Startup_test();
+    }
+
+    /**
+     * Number of blocks currently pooled.
+     */
+    public int getDepth() {
+        lock.lock();
+        try {
+            return depth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of requests that found the pool short and went to the underlying
+     * source.
+     */
+    public long getStallCount() {
+        return stalls.get();
+    }
+
+    /**
+     * Number of requests served successfully.
+     */
+    public long getServedCount() {
+        return served.get();
+    }
+
+    /**
+     * Stops the producer and fails every later request with ERROR_FLAG, unless
+     * the pool has already failed. Pooled blocks are erased.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (failure == Status.SUCCESS)
+                failure = Status.ERROR_FLAG;
+            if (producer != null)
+                producer.interrupt();
+            refill.signalAll();
+            for (byte[] block : blocks)
+                Arrays.fill(block, (byte) 0);
+            depth = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ----- Local implementation
+
+    /**
+     * The producer loop. Waits for the pool to drain to the low watermark and then
+     * gathers blocks until it reaches the high watermark.
+     */
+    private void Produce() {
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+
+                lock.lock();
+                try {
+                    while (depth > low_watermark && failure == Status.SUCCESS)
+                        refill.await();
+                    if (failure != Status.SUCCESS)
+                        return;
+                } finally {
+                    lock.unlock();
+                }
+
+                while (!Thread.currentThread().isInterrupted()) {
+                    Tuple2<Status, byte[]> entropy_input = source.Get_entropy_input(
+                            0, block_length << 3, block_length << 3, true);
+
+                    if (entropy_input.first == Status.ERROR_FLAG) {
+                        // Entropy currently unavailable, try again shortly.
+                        TimeUnit.MILLISECONDS.sleep(10);
+                        continue;
+                    }
+
+                    lock.lock();
+                    try {
+                        // Closed or failed meanwhile.
+                        if (failure != Status.SUCCESS)
+                            return;
+                        if (entropy_input.first != Status.SUCCESS || !Continuous_test(entropy_input.second)) {
+                            failure = Status.CATASTROPHIC_ERROR_FLAG;
+                            return;
+                        }
+
+                        System.arraycopy(entropy_input.second, 0, blocks[(head + depth) % high_watermark], 0,
+                                block_length);
+                        if (++depth >= high_watermark)
+                            break;
+                    } finally {
+                        lock.unlock();
+                        if (entropy_input.second != null)
+                            Arrays.fill(entropy_input.second, (byte) 0);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // The producer is gone, fail every later request rather than quietly
+            // serving them all as stalls.
+            lock.lock();
+            try {
+                if (failure == Status.SUCCESS)
+                    failure = Status.ERROR_FLAG;
+                refill.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Rejects a block identical to the one gathered before it.
+     *
+     * @param block
+     * @return
+     */
+    private boolean Continuous_test(byte[] block) {
+
+        boolean repeated = has_previous_block && Arrays.equals(block, 0, block_length, previous_block, 0,
+                block_length);
+        System.arraycopy(block, 0, previous_block, 0, block_length);
+        has_previous_block = true;
+        return !repeated;
+    }
+}
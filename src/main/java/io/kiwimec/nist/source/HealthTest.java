@@ -0,0 +1,228 @@
+package io.kiwimec.nist.source;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.kiwimec.nist.util.Status;
+
+/*
+4.4 Approved Continuous Health Tests (SP 800-90B)
+
+4.4.1 Repetition Count Test
+
+The goal of this test is to quickly detect catastrophic failures that cause the noise source to
+become "stuck" on a single output value for a long period of time. Given the assessed min-entropy
+H of a noise source, the probability of that source generating n identical samples consecutively
+is at most 2^(-H(n-1)). The test declares an error if a sample is repeated C or more times. The
+cutoff value C is determined by the acceptable false-positive probability α and the entropy
+estimate H using the following formula: C = 1 + ⌈(-log2 α) / H⌉.
+
+4.4.2 Adaptive Proportion Test
+
+The Adaptive Proportion Test is designed to detect a large loss of entropy that might occur as a
+result of some physical failure or environmental change affecting the noise source. The test
+continuously measures the local frequency of occurrence of a sample value in a sequence of noise
+source samples to determine if the sample occurs too frequently. Thus, the test is able to detect
+when some value begins to occur much more frequently than expected, given the source's assessed
+entropy per sample.
+
+The test counts the number of times the first sample value in a window of W samples is repeated
+within the window. The cutoff value C is computed as C = 1 + CRITBINOM(W, 2^(-H), 1 - α). The
+window size W is 1024 for binary and 512 for non-binary noise sources.
+
+4.3 Requirements for Health Tests
+
+Start-up testing shall be performed on at least 1024 consecutive samples. When a health test
+fails, the entropy source shall notify the consuming application.
+*/
+
+/**
+ * The Repetition Count and Adaptive Proportion tests of SP 800-90B applied to
+ * a stream of 8-bit samples. Each test keeps only its running count and the
+ * value it compares against, so a block is tested in a single pass with a
+ * compare and an increment per sample and no history is held.
+ *
+ * A failure is latched. Once a test fails every later call reports
+ * CATASTROPHIC_ERROR_FLAG, the source needs intervention before it is trusted
+ * again.
+ */
+public final class HealthTest {
+
+    /**
+     * Samples tested at start-up, the minimum of 4.3.
+     */
+    public static final int STARTUP_SAMPLES = 1024;
+
+    // Non-binary window of 4.4.2.
+    private static final int WINDOW = 512;
+
+    // α = 2^-40, the lowest false-positive rate 4.4 allows. The sources run for
+    // the lifetime of the process and a false alarm is fatal, so sensitivity is
+    // traded for a negligible chance of tripping on healthy output.
+    private static final int ALPHA_EXPONENT = 40;
+
+    private final int repetition_cutoff;
+    private final int proportion_cutoff;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Repetition Count Test, guarded by lock.
+    private int repetition_value = -1;
+    private int repetition_count = 0;
+
+    // Adaptive Proportion Test, guarded by lock.
+    private int proportion_value = -1;
+    private int proportion_count = 0;
+    private int proportion_index = 0;
+
+    private volatile boolean started = false;
+    private volatile Status status = Status.SUCCESS;
+
+    /**
+     * Tests a source claiming full entropy, 8 bits per byte.
+     */
+    public HealthTest() {
+        this(8);
+    }
+
+    /**
+     * @param min_entropy the assessed min-entropy H per byte sample, in bits.
+     */
+    public HealthTest(double min_entropy) {
+
+        if (!(min_entropy > 0 && min_entropy <= 8))
+            throw new IllegalArgumentException("Min-entropy per byte must be in (0, 8]");
+
+        repetition_cutoff = 1 + (int) Math.ceil(ALPHA_EXPONENT / min_entropy);
+        proportion_cutoff = 1 + Critbinom(WINDOW, Math.pow(2, -min_entropy), ALPHA_EXPONENT);
+    }
+
+    /**
+     * Start-up test over at least STARTUP_SAMPLES samples. The samples are only
+     * tested, the caller should discard them.
+     *
+     * @param samples
+     * @return SUCCESS or CATASTROPHIC_ERROR_FLAG.
+     */
+    public Status Startup_test(byte[] samples) {
+
+        if (samples.length < STARTUP_SAMPLES)
+            throw new IllegalArgumentException("Start-up testing needs " + STARTUP_SAMPLES + " samples");
+
+        Status result = Continuous_test(samples, 0, samples.length);
+        started = true;
+        return result;
+    }
+
+    /**
+     * Runs both tests over <code>length</code> samples from <code>offset</code>,
+     * continuing from the samples tested before.
+     *
+     * @param samples
+     * @param offset
+     * @param length
+     * @return SUCCESS or CATASTROPHIC_ERROR_FLAG.
+     */
+    public Status Continuous_test(byte[] samples, int offset, int length) {
+
+        lock.lock();
+        try {
+            if (status != Status.SUCCESS)
+                return status;
+
+            int rct_value = repetition_value;
+            int rct_count = repetition_count;
+            int apt_value = proportion_value;
+            int apt_count = proportion_count;
+            int apt_index = proportion_index;
+            boolean failed = false;
+
+            for (int i = offset, end = offset + length; i < end; i++) {
+                int sample = samples[i] & 0xFF;
+
+                // 4.4.1 A sample equal to the last extends the run, otherwise it starts a new
+                // one.
+                if (sample == rct_value) {
+                    failed |= ++rct_count >= repetition_cutoff;
+                } else {
+                    rct_value = sample;
+                    rct_count = 1;
+                }
+
+                // 4.4.2 The first sample of a window is the value counted over the rest of
+                // it.
+                if (apt_index == 0) {
+                    apt_value = sample;
+                    apt_count = 1;
+                } else if (sample == apt_value) {
+                    failed |= ++apt_count >= proportion_cutoff;
+                }
+                if (++apt_index == WINDOW)
+                    apt_index = 0;
+            }
+
+            repetition_value = rct_value;
+            repetition_count = rct_count;
+            proportion_value = apt_value;
+            proportion_count = apt_count;
+            proportion_index = apt_index;
+
+            if (failed)
+                status = Status.CATASTROPHIC_ERROR_FLAG;
+            return status;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * True once the start-up test has run, whatever its outcome.
+     */
+    public boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * SUCCESS until a test fails, CATASTROPHIC_ERROR_FLAG after.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * The Repetition Count Test cutoff C.
+     */
+    public int getRepetitionCutoff() {
+        return repetition_cutoff;
+    }
+
+    /**
+     * The Adaptive Proportion Test cutoff C.
+     */
+    public int getProportionCutoff() {
+        return proportion_cutoff;
+    }
+
+    // ----- Local implementation
+
+    /**
+     * CRITBINOM (n, p, 1 - 2^-alpha_exponent), the smallest k whose binomial
+     * upper tail P(X > k) is at most α. The terms are formed in the log domain so
+     * small probabilities do not underflow before they are summed.
+     */
+    private static int Critbinom(int n, double p, int alpha_exponent) {
+
+        double alpha = Math.pow(2, -alpha_exponent);
+        double[] log_pmf = new double[n + 1];
+        log_pmf[0] = n * Math.log1p(-p);
+        for (int k = 0; k < n; k++)
+            log_pmf[k + 1] = log_pmf[k] + Math.log((double) (n - k) / (k + 1)) + Math.log(p / (1 - p));
+
+        double tail = 0;
+        for (int k = n; k > 0; k--) {
+            tail += Math.exp(log_pmf[k]);
+            if (tail > alpha)
+                return k;
+        }
+        return 0;
+    }
+}
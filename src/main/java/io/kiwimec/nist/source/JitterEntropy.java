@@ -0,0 +1,123 @@
+package io.kiwimec.nist.source;
+
+import java.util.Arrays;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Entropy collected from CPU execution time jitter. Each raw sample is the
+ * time taken by a short walk over a scratch array that is larger than the
+ * first level cache. Cache, pipeline, interrupt and frequency effects make that
+ * time vary, and the nanosecond delta is folded into a byte.
+ *
+ * The raw samples are health tested and then conditioned with Hash_df. Each
+ * sample is credited with <code>min_entropy</code> bits, half a bit by default.
+ * A request for n bits collects enough samples for n + 64 bits, the margin SP
+ * 800-90C asks of conditioned full entropy output.
+ *
+ * The source needs no device or provider, but it is slow, and on a host whose
+ * timer is too coarse to show jitter the repetition count test fails it. Its
+ * natural place is as one input to a <code>CombinedEntropy</code>.
+ */
+public class JitterEntropy implements Entropy {
+
+    private static final double DEFAULT_MIN_ENTROPY = 0.5;
+
+    // A walk of 64 accesses over 64 KiB, striding by a prime number of cache lines.
+    private static final int MEMORY_LENGTH = 1 << 16;
+    private static final int ACCESSES = 64;
+    private static final int STRIDE = 67 * 64;
+
+    private final double min_entropy;
+    private final HealthTest health_test;
+
+    // Scratch for the walk. Races between threads on it are harmless, only the
+    // time taken matters.
+    private final byte[] memory = new byte[MEMORY_LENGTH];
+    private int index = 0;
+
+    public JitterEntropy() {
+
+        this(DEFAULT_MIN_ENTROPY);
+    }
+
+    /**
+     * @param min_entropy assessed min-entropy per raw sample in bits, in (0, 8].
+     */
+    public JitterEntropy(double min_entropy) {
+
+        this.min_entropy = min_entropy;
+        this.health_test = new HealthTest(min_entropy);
+    }
+
+    @Override
+    public Tuple2<Status, byte[]> Get_entropy_input(
+            int requested_instantiation_security_strength,
+            int min_length,
+            int max_length,
+            boolean prediction_resistance_request) {
+
+        // Every request collects fresh samples, so prediction resistance needs
+        // nothing extra.
+        Status status = Startup_test();
+        if (status != Status.SUCCESS)
+            return new Tuple2<Status, byte[]>(status, null);
+
+        byte[] samples = new byte[(int) Math.ceil((min_length + 64) / min_entropy)];
+        try {
+            Collect(samples);
+            status = health_test.Continuous_test(samples, 0, samples.length);
+            if (status != Status.SUCCESS)
+                return new Tuple2<Status, byte[]>(status, null);
+
+            return new Tuple2<Status, byte[]>(Status.SUCCESS,
+                    Conditioning.Hash_df(new byte[][] { samples }, min_length));
+        } finally {
+            Arrays.fill(samples, (byte) 0);
+        }
+    }
+
+    @Override
+    public Status Startup_test() {
+
+        if (health_test.isStarted())
+            return health_test.getStatus();
+
+        byte[] samples = new byte[HealthTest.STARTUP_SAMPLES];
+        try {
+            Collect(samples);
+            return health_test.Startup_test(samples);
+        } finally {
+            Arrays.fill(samples, (byte) 0);
+        }
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Fills <code>samples</code> with folded timing deltas of the memory walk.
+     */
+    private void Collect(byte[] samples) {
+
+        int position = index;
+        long previous = System.nanoTime();
+        for (int s = 0; s < samples.length; s++) {
+
+            for (int i = 0; i < ACCESSES; i++) {
+                position = (position + STRIDE) & (MEMORY_LENGTH - 1);
+                memory[position] += (byte) (previous + i);
+            }
+
+            long now = System.nanoTime();
+            long delta = now - previous;
+            previous = now;
+
+            delta ^= delta >>> 32;
+            delta ^= delta >>> 16;
+            delta ^= delta >>> 8;
+            samples[s] = (byte) delta;
+        }
+        index = position;
+    }
+}
@@ -1,5 +1,8 @@
 package io.kiwimec.nist.source;
 
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
 /* 
 8.6.7 Nonce
 
@@ -68,11 +71,91 @@ nonce is initialized when the DRBG is instantiated (e.g., by a call to the clock
 to a fixed value) and is incremented for each instantiation.
 */
 
-// TODO: code a real nonce generator illustrating the options above.
+/**
+ * Nonce generator offering the components listed in 8.6.7 above. Every option
+ * is built on atomic primitives so concurrent instantiations obtain distinct
+ * nonces without taking a lock.
+ */
 public class Nonce {
-    
-    public String Get_nonce() {
 
-        return "nonce";
+    /**
+     * The nonce components of 8.6.7.
+     */
+    public enum Option {
+        // 1. A random value of security_strength/2 bits generated anew for each nonce.
+        RANDOM,
+        // 2. A timestamp that is different each time it is used.
+        TIMESTAMP,
+        // 3. A monotonically increasing sequence number, initialised from the clock as
+        // in B.1 and B.3.
+        COUNTER,
+        // 4. A timestamp and a sequence number that is reset when and only when the
+        // timestamp changes.
+        TIMESTAMP_COUNTER
+    }
+
+    // Bits of a TIMESTAMP_COUNTER nonce given to the sequence number.
+    private static final int SEQUENCE_BITS = 20;
+
+    private final Option option;
+    private final AtomicLong last = new AtomicLong();
+    private final ThreadLocal<SecureRandom> random;
+
+    /**
+     * A timestamp and sequence number nonce.
+     */
+    public Nonce() {
+
+        this(Option.TIMESTAMP_COUNTER);
+    }
+
+    public Nonce(Option option) {
+
+        this.option = option;
+        this.random = option == Option.RANDOM ? ThreadLocal.withInitial(SecureRandom::new) : null;
+        if (option == Option.COUNTER)
+            last.set(System.currentTimeMillis() << SEQUENCE_BITS);
+    }
+
+    /**
+     * Obtains a nonce for an instantiation at <code>security_strength</code>.
+     *
+     * @param security_strength
+     * @return
+     */
+    public byte[] Get_nonce(int security_strength) {
+
+        switch (option) {
+            case RANDOM: {
+                // Per-thread generators so concurrent callers do not share a lock.
+                byte[] nonce = new byte[(security_strength + 15) >>> 4];
+                random.get().nextBytes(nonce);
+                return nonce;
+            }
+            case TIMESTAMP:
+                // Millisecond resolution bumped past the last value handed out, so the
+                // timestamp differs each time even when called within one tick.
+                return toBytes(last.accumulateAndGet(System.currentTimeMillis(),
+                        (previous, now) -> Math.max(previous + 1, now)));
+            case COUNTER:
+                return toBytes(last.incrementAndGet());
+            case TIMESTAMP_COUNTER:
+            default:
+                // Timestamp in the high bits, sequence number in the low bits. A sequence
+                // that overflows within a tick carries into the timestamp, which keeps the
+                // nonces unique at the cost of running slightly ahead of the clock.
+                return toBytes(last.accumulateAndGet(System.currentTimeMillis() << SEQUENCE_BITS,
+                        (previous, now) -> (previous >>> SEQUENCE_BITS) < (now >>> SEQUENCE_BITS)
+                                ? now
+                                : previous + 1));
+        }
+    }
+
+    private static byte[] toBytes(long value) {
+
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--, value >>>= 8)
+            bytes[i] = (byte) value;
+        return bytes;
     }
 }
@@ -0,0 +1,110 @@
+package io.kiwimec.nist.source;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Entropy drawn from a SecureRandom. Prediction resistant requests use
+ * <code>generateSeed</code> and others <code>nextBytes</code>. Every block is
+ * health tested on its way out.
+ */
+public class SecureRandomEntropy implements Entropy {
+
+        private final SecureRandom random;
+        private final HealthTest health_test;
+
+        public SecureRandomEntropy() {
+                this(new SecureRandom());
+        }
+
+        /**
+         * Draws entropy from <code>random</code> rather than the default
+         * SecureRandom, for callers that must not depend on provider order.
+         *
+         * @param random
+         */
+        public SecureRandomEntropy(SecureRandom random) {
+                this(random, new HealthTest());
+        }
+
+        /**
+         * Draws entropy from <code>random</code> and tests it with
+         * <code>health_test</code>, for sources assessed below full entropy.
+         *
+         * @param random
+         * @param health_test
+         */
+        public SecureRandomEntropy(SecureRandom random, HealthTest health_test) {
+                this.random = random;
+                this.health_test = health_test;
+        }
+
+        /**
+         * Runs the SP 800-90B start-up test once, on samples that are then
+         * discarded. Later calls return the current health status.
+         *
+         * @return SUCCESS or CATASTROPHIC_ERROR_FLAG.
+         */
+        @Override
+        public Status Startup_test() {
+
+                if (health_test.isStarted())
+                        return health_test.getStatus();
+
+                byte[] samples = random.generateSeed(HealthTest.STARTUP_SAMPLES);
+                try {
+                        return health_test.Startup_test(samples);
+                } finally {
+                        Arrays.fill(samples, (byte) 0);
+                }
+        }
+
+        // (status, entropy_input) = Get_entropy_input (security_strength, min_length,
+        // max_length, prediction_resistance_request).
+        //
+        // Comment: status indications other than SUCCESS could be ERROR_FLAG or
+        // CATASTROPHIC_ERROR_FLAG, in which case, the status is returned to the
+        // consuming application to handle. The Get_entropy_input call could return a
+        // status of ERROR_FLAG to indicate that entropy is currently unavailable, and
+        // could return CATASTROPHIC_ERROR_FLAG to indicate that an entropy source
+        // failed.
+        @Override
+        public Tuple2<Status, byte[]> Get_entropy_input(
+                        int requested_instantiation_security_strength,
+                        int min_length,
+                        int max_length,
+                        boolean prediction_resistance_request) {
+
+                // The lengths are in bits, the entropy is returned in whole bytes. A full
+                // entropy source meets the request with min_length bits, max_length is
+                // only an upper bound.
+                int length = (min_length + 7) >>> 3;
+
+                // Nothing is handed out before the start-up test has passed.
+                Status status = Startup_test();
+                if (status != Status.SUCCESS)
+                        return new Tuple2<Status, byte[]>(status, null);
+
+                // If we want prediction resistence force the use of the reseed algorithm to
+                // involve the hardware.
+                byte bytes[];
+                if (prediction_resistance_request == true) {
+                        bytes = random.generateSeed(length);
+                } else {
+                        // Otherwise we simply want the next amount of random data.
+                        bytes = new byte[length];
+                        random.nextBytes(bytes);
+                }
+
+                // Every block passes the continuous tests on its way out.
+                status = health_test.Continuous_test(bytes, 0, bytes.length);
+                if (status != Status.SUCCESS) {
+                        Arrays.fill(bytes, (byte) 0);
+                        return new Tuple2<Status, byte[]>(status, null);
+                }
+                return new Tuple2<Status, byte[]>(Status.SUCCESS, bytes);
+        }
+}
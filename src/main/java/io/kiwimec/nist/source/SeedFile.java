@@ -0,0 +1,411 @@
+package io.kiwimec.nist.source;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * An entropy source that warm starts from a seed file saved by the previous
+ * run, in the manner of systemd's random-seed. The file is read once when the
+ * source is created and immediately overwritten, so a seed is never used
+ * twice even if the process dies before saving a new one. The successor is
+ * rewritten with live entropy mixed in as soon as the underlying source
+ * delivers it.
+ *
+ * Until the underlying source has delivered entropy once, every request asks
+ * it for entropy but waits at most <code>live_timeout</code> nanoseconds. The
+ * seed is hashed together with whatever live entropy arrived in time, so a
+ * freshly booted host whose entropy source blocks still instantiates at once.
+ * After the first timely live delivery the seed is erased and requests go
+ * straight to the underlying source.
+ *
+ * Prediction resistant requests are never served from the seed, they always
+ * wait for the underlying source.
+ *
+ * The output of a request served without live entropy is only as
+ * unpredictable as the seed file. It must be readable by this process alone
+ * and must not be baked into images that are started more than once.
+ *
+ * <code>save</code> writes fresh DRBG output to the file for the next run, by
+ * writing a temporary file in the same directory and renaming it over the old
+ * one. Call it periodically and on shutdown, see <code>saveOnShutdown</code>.
+ */
+public class SeedFile implements Entropy {
+
+    /**
+     * Length of the saved seed, 512 bits.
+     */
+    public static final int SEED_LENGTH = 64;
+
+    private static final long DEFAULT_LIVE_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+    private final Entropy source;
+    private final Path file;
+    private final long live_timeout;
+
+    // Gathers live entropy while the seed is held, so a blocked source never
+    // holds up the caller for longer than live_timeout.
+    private final ExecutorService live_executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "seed-file-entropy");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // The seed, the number of requests mixed with it and the live request in
+    // flight, guarded by lock.
+    private final ReentrantLock lock = new ReentrantLock();
+    private byte[] seed;
+    private long counter = 0;
+    private CompletableFuture<Tuple2<Status, byte[]>> pending = null;
+
+    // The successor written by Load, until live entropy has been mixed into it
+    // or save has replaced it, and the writes of the file, guarded by
+    // store_lock.
+    private final ReentrantLock store_lock = new ReentrantLock();
+    private byte[] successor = null;
+
+    // Completes once the successor has been refreshed with live entropy, or that
+    // was abandoned.
+    final CompletableFuture<Void> refresh;
+
+    /**
+     * @param source the live entropy source.
+     * @param file   the seed file, it need not exist yet.
+     * @throws IOException if an existing seed file cannot be read or replaced.
+     */
+    public SeedFile(Entropy source, Path file) throws IOException {
+
+        this(source, file, DEFAULT_LIVE_TIMEOUT);
+    }
+
+    /**
+     * @param source       the live entropy source.
+     * @param file         the seed file, it need not exist yet.
+     * @param live_timeout nanoseconds a request waits for live entropy while the
+     *                     seed is held.
+     * @throws IOException if an existing seed file cannot be read or replaced.
+     */
+    public SeedFile(Entropy source, Path file, long live_timeout) throws IOException {
+
+        this.source = source;
+        this.file = file;
+        this.live_timeout = live_timeout;
+        this.seed = Load();
+        this.refresh = seed == null ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.runAsync(this::Refresh, live_executor);
+    }
+
+    @Override
+    public Tuple2<Status, byte[]> Get_entropy_input(
+            int requested_instantiation_security_strength,
+            int min_length,
+            int max_length,
+            boolean prediction_resistance_request) {
+
+        // A prediction resistant request needs fresh entropy, the seed has none to
+        // add, so it waits for the source however long that takes.
+        if (prediction_resistance_request || !hasSeed())
+            return source.Get_entropy_input(requested_instantiation_security_strength, min_length, max_length,
+                    prediction_resistance_request);
+
+        // One live request at a time, a source that is still blocked on an earlier
+        // one is not asked again.
+        CompletableFuture<Tuple2<Status, byte[]>> live = null;
+        lock.lock();
+        try {
+            if (pending == null || pending.isDone())
+                live = pending = CompletableFuture.supplyAsync(
+                        () -> source.Get_entropy_input(requested_instantiation_security_strength, min_length,
+                                max_length, false),
+                        live_executor);
+        } finally {
+            lock.unlock();
+        }
+
+        Tuple2<Status, byte[]> live_entropy_input = null;
+        if (live != null) {
+            try {
+                live_entropy_input = live.get(live_timeout, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Erase the late delivery, this request goes ahead on the seed.
+                live.thenAccept(late -> {
+                    if (late.second != null)
+                        Arrays.fill(late.second, (byte) 0);
+                });
+            } catch (ExecutionException e) {
+                return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+            }
+        }
+
+        // A live failure, a failed health test in particular, is reported rather than
+        // papered over with the seed.
+        if (live_entropy_input != null && live_entropy_input.first != Status.SUCCESS)
+            return live_entropy_input;
+
+        lock.lock();
+        try {
+            // Another request used up the seed meanwhile.
+            if (seed == null)
+                return live_entropy_input != null ? live_entropy_input
+                        : source.Get_entropy_input(requested_instantiation_security_strength, min_length,
+                                max_length, false);
+
+            byte[] entropy_input = Mix(seed, ++counter,
+                    live_entropy_input == null ? null : live_entropy_input.second, (min_length + 7) >>> 3);
+
+            // The source is delivering, it no longer needs the seed.
+            if (live_entropy_input != null) {
+                Arrays.fill(seed, (byte) 0);
+                Arrays.fill(live_entropy_input.second, (byte) 0);
+                seed = null;
+            }
+            return new Tuple2<Status, byte[]>(Status.SUCCESS, entropy_input);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * While the seed is held the underlying source's start-up test runs in the
+     * background, a failure surfaces through the next request. Without a seed it
+     * runs in the caller.
+     */
+    @Override
+    public Status Startup_test() {
+
+        if (!hasSeed())
+            return source.Startup_test();
+
+        live_executor.execute(source::Startup_test);
+        return Status.SUCCESS;
+    }
+
+    /**
+     * True while requests are still mixed with the seed file.
+     */
+    public boolean hasSeed() {
+        lock.lock();
+        try {
+            return seed != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the seed file with SEED_LENGTH bytes generated by
+     * <code>mechanism</code> from <code>state_handle</code>.
+     *
+     * @param mechanism
+     * @param state_handle
+     * @return the status of the Generate_function call, the file is only
+     *         written on SUCCESS.
+     * @throws IOException
+     */
+    public Status save(Mechanism mechanism, int state_handle) throws IOException {
+
+        byte[] next_seed = new byte[SEED_LENGTH];
+        try {
+            Status status = mechanism.Generate_function(state_handle, SEED_LENGTH << 3, 0, false, null,
+                    next_seed, 0);
+            if (status == Status.SUCCESS) {
+                store_lock.lock();
+                try {
+                    Store(next_seed);
+                    eraseSuccessor();
+                } finally {
+                    store_lock.unlock();
+                }
+            }
+            return status;
+        } finally {
+            Arrays.fill(next_seed, (byte) 0);
+        }
+    }
+
+    /**
+     * Saves a new seed from <code>mechanism</code> when the JVM shuts down. The
+     * instantiation must still exist at that point.
+     *
+     * @param mechanism
+     * @param state_handle
+     */
+    public void saveOnShutdown(Mechanism mechanism, int state_handle) {
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                save(mechanism, state_handle);
+            } catch (IOException e) {
+                // Nothing to report to at shutdown, the next run starts cold.
+            }
+        }, "seed-file-save"));
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Reads the seed file, if there is a complete one, and replaces it with a
+     * successor so the seed just read cannot be read again.
+     */
+    private byte[] Load() throws IOException {
+
+        if (!Files.isRegularFile(file) || Files.size(file) != SEED_LENGTH)
+            return null;
+
+        byte[] loaded = Files.readAllBytes(file);
+        if (loaded.length != SEED_LENGTH) {
+            Arrays.fill(loaded, (byte) 0);
+            return null;
+        }
+
+        // The successor is a one-way function of the seed, it reveals nothing about
+        // the seed and differs from it. It is written at once so the seed is never
+        // read twice, then refreshed with live entropy, see Refresh, and replaced
+        // by save.
+        successor = Mix(loaded, 0, null, SEED_LENGTH);
+        Store(successor);
+        return loaded;
+    }
+
+    /**
+     * Rewrites the successor mixed with live entropy, so a run that dies before
+     * saving does not leave the next run a seed predictable from this one. Runs
+     * once, in the background, as the source may block. Skipped if save has
+     * written a seed meanwhile.
+     */
+    private void Refresh() {
+
+        Tuple2<Status, byte[]> live = null;
+        try {
+            live = source.Get_entropy_input(256, SEED_LENGTH << 3, SEED_LENGTH << 3, false);
+
+            store_lock.lock();
+            try {
+                if (successor == null || live.first != Status.SUCCESS)
+                    return;
+
+                byte[] refreshed = Mix(successor, 0, live.second, SEED_LENGTH);
+                try {
+                    Store(refreshed);
+                } catch (IOException e) {
+                    // The successor written by Load stays.
+                } finally {
+                    Arrays.fill(refreshed, (byte) 0);
+                }
+            } finally {
+                eraseSuccessor();
+                store_lock.unlock();
+            }
+        } finally {
+            if (live != null && live.second != null)
+                Arrays.fill(live.second, (byte) 0);
+        }
+    }
+
+    /**
+     * Called with store_lock held.
+     */
+    private void eraseSuccessor() {
+
+        if (successor != null) {
+            Arrays.fill(successor, (byte) 0);
+            successor = null;
+        }
+    }
+
+    /**
+     * Writes <code>bytes</code> to a temporary file beside the seed file, forces
+     * it to storage and renames it over the seed file.
+     */
+    private void Store(byte[] bytes) throws IOException {
+
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+
+        // A leftover from an interrupted save may have other permissions, the file
+        // is created afresh so it is never readable by anyone else, not even
+        // briefly. Without POSIX permissions the directory must be protected
+        // instead.
+        Files.deleteIfExists(temporary);
+        Set<StandardOpenOption> options = EnumSet.of(StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        FileAttribute<?>[] attributes = file.getFileSystem().supportedFileAttributeViews().contains("posix")
+                ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(OWNER_ONLY) }
+                : new FileAttribute<?>[0];
+
+        try (FileChannel channel = FileChannel.open(temporary, options, attributes)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * <code>length</code> bytes of SHA-512 (i || counter || seed || live) for
+     * i = 1, 2, ..., where live may be null.
+     */
+    private static byte[] Mix(byte[] seed, long counter, byte[] live, int length) {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-512");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] output = new byte[length];
+        byte[] block = new byte[digest.getDigestLength()];
+        ByteBuffer header = ByteBuffer.allocate(12);
+        try {
+            for (int i = 1, offset = 0; offset < length; i++, offset += block.length) {
+                digest.update(header.putInt(0, i).putLong(4, counter).array());
+                digest.update(seed);
+                if (live != null)
+                    digest.update(live);
+                digest.digest(block, 0, block.length);
+                System.arraycopy(block, 0, output, offset, Math.min(block.length, length - offset));
+            }
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Arrays.fill(block, (byte) 0);
+        }
+        return output;
+    }
+}
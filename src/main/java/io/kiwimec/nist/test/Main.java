@@ -1,7 +1,202 @@
 package io.kiwimec.nist.test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import io.kiwimec.nist.drbg.Aes256CtrNoDf;
+import io.kiwimec.nist.drbg.AesCtrDf;
+import io.kiwimec.nist.drbg.Algorithm;
+import io.kiwimec.nist.drbg.HashDrbg;
+import io.kiwimec.nist.drbg.HmacDrbg;
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.source.Entropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Writes bulk DRBG output to a file, for feeding statistical test suites and
+ * the like.
+ *
+ * <pre>
+ * java -jar jwe-1-jar-with-dependencies.jar file bytes [algorithm] [region MiB] [threads]
+ * </pre>
+ *
+ * The file is split into regions that are memory mapped and filled in parallel
+ * on a fork-join pool. Every region gets its own Mechanism, instantiated
+ * independently with the region number as personalization string, so no state
+ * is shared between the workers and the output scales with the cores.
+ */
 public class Main {
+
+    private static final int DEFAULT_REGION_MIB = 64;
+
     public static void main(String[] args) throws Exception {
-        System.out.println("Hello world.");
+
+        if (args.length < 2) {
+            System.err.println("Usage: Main file bytes [algorithm] [region MiB] [threads]");
+            System.err.println("Algorithms: AES-256-CTR, AES-128-CTR-DF, AES-192-CTR-DF, AES-256-CTR-DF (default),");
+            System.err.println("            SHA-256-HASH, SHA-512-HASH, SHA-256-HMAC, SHA-512-HMAC");
+            System.exit(2);
+        }
+
+        Path file = Paths.get(args[0]);
+        long bytes = Long.parseLong(args[1]);
+        Supplier<Algorithm> drbg_algorithm = algorithm(args.length > 2 ? args[2] : "AES-256-CTR-DF");
+        long region = (long) (args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_REGION_MIB) << 20;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        if (bytes < 0 || region <= 0 || region > Integer.MAX_VALUE || threads < 1)
+            throw new IllegalArgumentException("Invalid size, region or thread count");
+
+        long start = System.nanoTime();
+        write(file, bytes, (int) region, drbg_algorithm, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d bytes in %.3f s, %.1f MiB/s%n", bytes, seconds, bytes / seconds / (1 << 20));
+    }
+
+    /**
+     * Writes <code>bytes</code> of output to <code>file</code>, replacing its
+     * contents.
+     *
+     * @param file
+     * @param bytes
+     * @param region         bytes per mapped region.
+     * @param drbg_algorithm creates the algorithm of each region's Mechanism.
+     * @param threads        fork-join pool parallelism.
+     * @throws IOException
+     */
+    public static void write(Path file, long bytes, int region, Supplier<Algorithm> drbg_algorithm, int threads)
+            throws IOException {
+
+        Entropy entropy_source = new SecureRandomEntropy();
+        Nonce nonce_source = new Nonce();
+        long regions = (bytes + region - 1) / region;
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            pool.invoke(new Fill(channel, bytes, region, 0, regions, entropy_source, nonce_source,
+                    drbg_algorithm));
+            channel.force(false);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Fills the regions <code>[first, last)</code>, splitting the range in half
+     * until a single region is left.
+     */
+    private static final class Fill extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long bytes;
+        private final int region;
+        private final long first;
+        private final long last;
+        private final transient Entropy entropy_source;
+        private final transient Nonce nonce_source;
+        private final transient Supplier<Algorithm> drbg_algorithm;
+
+        Fill(FileChannel channel, long bytes, int region, long first, long last, Entropy entropy_source,
+                Nonce nonce_source, Supplier<Algorithm> drbg_algorithm) {
+
+            this.channel = channel;
+            this.bytes = bytes;
+            this.region = region;
+            this.first = first;
+            this.last = last;
+            this.entropy_source = entropy_source;
+            this.nonce_source = nonce_source;
+            this.drbg_algorithm = drbg_algorithm;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (last - first > 1) {
+                long middle = (first + last) >>> 1;
+                invokeAll(
+                        new Fill(channel, bytes, region, first, middle, entropy_source, nonce_source,
+                                drbg_algorithm),
+                        new Fill(channel, bytes, region, middle, last, entropy_source, nonce_source,
+                                drbg_algorithm));
+                return;
+            }
+
+            long position = first * region;
+            int length = (int) Math.min(region, bytes - position);
+            if (length <= 0)
+                return;
+
+            try {
+                fill(channel.map(FileChannel.MapMode.READ_WRITE, position, length));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to map region " + first, e);
+            }
+        }
+
+        private void fill(MappedByteBuffer buffer) {
+
+            Mechanism mechanism = new Mechanism(entropy_source, nonce_source, drbg_algorithm.get());
+            Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(
+                    mechanism.getHighestSupportedSecurityStrength(), false,
+                    ByteBuffer.wrap(("region " + first).getBytes(StandardCharsets.US_ASCII)));
+            if (instantiated.first != Status.SUCCESS)
+                throw new IllegalStateException("Instantiate_function returned " + instantiated.first);
+
+            int state_handle = instantiated.second;
+            int max_bytes_per_request = mechanism.getMaxNumberOfBitsPerRequest() >>> 3;
+            try {
+                while (buffer.hasRemaining()) {
+                    int length = Math.min(max_bytes_per_request, buffer.remaining());
+                    Status status = mechanism.Generate_function(state_handle, length << 3, 0, false, null,
+                            buffer);
+                    if (status != Status.SUCCESS)
+                        throw new IllegalStateException("Generate_function returned " + status);
+                }
+            } finally {
+                mechanism.Uninstantiate_function(state_handle);
+            }
+        }
+    }
+
+    private static Supplier<Algorithm> algorithm(String name) {
+
+        switch (name) {
+            case "AES-256-CTR":
+                return () -> new Aes256CtrNoDf(false);
+            case "AES-128-CTR-DF":
+                return () -> new AesCtrDf(AesCtrDf.Aes.AES_128, false);
+            case "AES-192-CTR-DF":
+                return () -> new AesCtrDf(AesCtrDf.Aes.AES_192, false);
+            case "AES-256-CTR-DF":
+                return () -> new AesCtrDf(AesCtrDf.Aes.AES_256, false);
+            case "SHA-256-HASH":
+                return () -> new HashDrbg(HashDrbg.Hash.SHA_256, false);
+            case "SHA-512-HASH":
+                return () -> new HashDrbg(HashDrbg.Hash.SHA_512, false);
+            case "SHA-256-HMAC":
+                return () -> new HmacDrbg(HmacDrbg.Hash.SHA_256, false);
+            case "SHA-512-HMAC":
+                return () -> new HmacDrbg(HmacDrbg.Hash.SHA_512, false);
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + name);
+        }
     }
-}
\ No newline at end of file
+}
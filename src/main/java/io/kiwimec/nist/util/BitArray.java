@@ -1,9 +1,31 @@
 package io.kiwimec.nist.util;
 
-// Interesting bit class, compare BitSet
-class BitArray {
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A bit string as used by the 800-90 pseudocode, compare BitSet. Bit 0 is the
+ * leftmost bit. The bits are held in longs with the leftmost bit of each word
+ * in its most significant position, so a bit string converts to and from the
+ * big-endian byte strings the algorithms hash and encrypt a word at a time.
+ * Bits past the length in the last word are always zero.
+ *
+ * The operations from the standard return a new bit string, leftmost,
+ * rightmost, select, concatenation (||), XOR (⊕) and (x + 1) mod 2^n, and the
+ * last two also have in place variants.
+ *
+ * The same arithmetic is offered on big-endian byte arrays directly by the
+ * static methods, for working states that keep their values as bytes: XOR,
+ * increment of the rightmost n bits and addition modulo 2^len.
+ */
+public final class BitArray {
 
     private static final int MASK = 63;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.BIG_ENDIAN);
+
     private final long len;
     private long bits[] = null;
 
@@ -19,15 +41,315 @@ class BitArray {
         bits = new long[(int) (((size-1)>>6) + 1)];
     }
 
+    /**
+     * The bit string of all the bits of <code>bytes</code>.
+     *
+     * @param bytes
+     */
+    public BitArray(byte[] bytes) {
+        this(bytes, 0, (long) bytes.length << 3);
+    }
+
+    /**
+     * The leftmost <code>size</code> bits of the bytes starting at
+     * <code>offset</code>.
+     *
+     * @param bytes
+     * @param offset
+     * @param size
+     */
+    public BitArray(byte[] bytes, int offset, long size) {
+        this(size);
+        int length = (int) ((size + 7) >>> 3);
+        int i = 0;
+        for (; i + 8 <= length; i += 8)
+            bits[i >>> 3] = (long) LONGS.get(bytes, offset + i);
+        for (; i < length; i++)
+            bits[i >>> 3] |= (bytes[offset + i] & 0xFFL) << (56 - ((i & 7) << 3));
+        trim();
+    }
+
     public boolean getBit(long pos) {
-        return (bits[(int)(pos>>6)] & (1L << (pos&MASK))) != 0;
+        return (bits[(int)(pos>>6)] & bit(pos)) != 0;
     }
 
     public void setBit(long pos, boolean b) {
-        if (getBit(pos) != b) { bits[(int)(pos>>6)] ^= (1L << (pos&MASK)); }
+        if (getBit(pos) != b) { bits[(int)(pos>>6)] ^= bit(pos); }
     }
 
     public long getLength() {
         return len;
     }
-}
\ No newline at end of file
+
+    // ----- Conversions
+
+    /**
+     * The bit string as big-endian bytes, the last byte padded on the right with
+     * zero bits.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[(int) ((len + 7) >>> 3)];
+        toByteArray(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Writes the bit string as big-endian bytes into <code>target</code> at
+     * <code>offset</code>, (len + 7) / 8 bytes.
+     *
+     * @param target
+     * @param offset
+     */
+    public void toByteArray(byte[] target, int offset) {
+        int length = (int) ((len + 7) >>> 3);
+        int i = 0;
+        for (; i + 8 <= length; i += 8)
+            LONGS.set(target, offset + i, bits[i >>> 3]);
+        for (; i < length; i++)
+            target[offset + i] = (byte) (bits[i >>> 3] >>> (56 - ((i & 7) << 3)));
+    }
+
+    // ----- 800-90 operations
+
+    /**
+     * leftmost (x, n), the leftmost n bits.
+     */
+    public BitArray leftmost(long n) {
+        return select(1, n);
+    }
+
+    /**
+     * rightmost (x, n), the rightmost n bits.
+     */
+    public BitArray rightmost(long n) {
+        return select(len - n + 1, len);
+    }
+
+    /**
+     * select (x, i, j), bits i to j inclusive counting the leftmost bit as 1.
+     */
+    public BitArray select(long i, long j) {
+        if (i < 1 || j > len || j < i)
+            throw new IndexOutOfBoundsException("select (" + i + ", " + j + ") of " + len + " bits");
+
+        BitArray result = new BitArray(j - i + 1);
+        long from = i - 1;
+        int word = (int) (from >>> 6);
+        int shift = (int) (from & MASK);
+        for (int k = 0; k < result.bits.length; k++) {
+            long value = bits[word + k] << shift;
+            if (shift != 0 && word + k + 1 < bits.length)
+                value |= bits[word + k + 1] >>> (64 - shift);
+            result.bits[k] = value;
+        }
+        result.trim();
+        return result;
+    }
+
+    /**
+     * x || y.
+     */
+    public BitArray concat(BitArray y) {
+        BitArray result = new BitArray(len + y.len);
+        System.arraycopy(bits, 0, result.bits, 0, bits.length);
+        int word = (int) (len >>> 6);
+        int shift = (int) (len & MASK);
+        for (int k = 0; k < y.bits.length; k++) {
+            result.bits[word + k] |= y.bits[k] >>> shift;
+            if (shift != 0 && word + k + 1 < result.bits.length)
+                result.bits[word + k + 1] |= y.bits[k] << (64 - shift);
+        }
+        return result;
+    }
+
+    /**
+     * x ⊕ y, for bit strings of equal length.
+     */
+    public BitArray xor(BitArray y) {
+        return copy().xorInPlace(y);
+    }
+
+    /**
+     * x = x ⊕ y, for bit strings of equal length.
+     *
+     * @return this bit string.
+     */
+    public BitArray xorInPlace(BitArray y) {
+        if (y.len != len)
+            throw new IllegalArgumentException("Lengths differ, " + len + " and " + y.len);
+        for (int k = 0; k < bits.length; k++)
+            bits[k] ^= y.bits[k];
+        return this;
+    }
+
+    /**
+     * leftmost (x, len - n) || ((rightmost (x, n) + 1) mod 2^n), the counter
+     * increment used by CTR_DRBG with n = ctr_len.
+     */
+    public BitArray increment(long n) {
+        return copy().incrementInPlace(n);
+    }
+
+    /**
+     * The in place variant of <code>increment</code>.
+     *
+     * @return this bit string.
+     */
+    public BitArray incrementInPlace(long n) {
+        if (n < 0 || n > len)
+            throw new IndexOutOfBoundsException("Increment of " + n + " bits of " + len);
+
+        // Work in units aligned to the right end of the string. The last word holds
+        // the rightmost bits above its zero padding.
+        int pad = (int) ((64 - (len & MASK)) & MASK);
+        long unit = 1L << pad;
+        for (int k = bits.length - 1; n > 0 && k >= 0; k--) {
+            long width = Math.min(n, 64 - pad);
+            long field = width == 64 ? -1L : ((1L << width) - 1) << pad;
+            long value = bits[k] + unit;
+            bits[k] = (bits[k] & ~field) | (value & field);
+            if ((value & field) != 0)
+                return this;
+            n -= width;
+            // Below the last word the units are whole words, keep the padding in step.
+            if (pad != 0) {
+                pad = 0;
+                unit = 1;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof BitArray && ((BitArray) o).len == len && Arrays.equals(((BitArray) o).bits, bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(len) * 31 + Arrays.hashCode(bits);
+    }
+
+    // ----- Big-endian byte array arithmetic
+
+    /**
+     * target = target ⊕ source over <code>length</code> bytes, a long word at a
+     * time.
+     *
+     * @param target
+     * @param target_offset
+     * @param source
+     * @param source_offset
+     * @param length
+     */
+    public static void xor(byte[] target, int target_offset, byte[] source, int source_offset, int length) {
+        int i = 0;
+        for (; i + 8 <= length; i += 8)
+            LONGS.set(target, target_offset + i,
+                    (long) LONGS.get(target, target_offset + i) ^ (long) LONGS.get(source, source_offset + i));
+        for (; i < length; i++)
+            target[target_offset + i] ^= source[source_offset + i];
+    }
+
+    /**
+     * Increments the rightmost <code>n</code> bits of the big-endian
+     * <code>x</code> modulo 2^n, leaving the leftmost bits alone.
+     *
+     * @param x
+     * @param n
+     */
+    public static void increment(byte[] x, int n) {
+        int i = x.length;
+        for (; n >= 64; n -= 64, i -= 8) {
+            long value = (long) LONGS.get(x, i - 8) + 1;
+            LONGS.set(x, i - 8, value);
+            if (value != 0)
+                return;
+        }
+        for (; n >= 8; n -= 8)
+            if (++x[--i] != 0)
+                return;
+        if (n > 0) {
+            int mask = (1 << n) - 1;
+            i--;
+            x[i] = (byte) ((x[i] & ~mask) | ((x[i] + 1) & mask));
+        }
+    }
+
+    /**
+     * x = (x + y) mod 2^len (x) where both are big-endian and y is no longer than
+     * x. The sum is formed a long word at a time from the rightmost end.
+     *
+     * @param x
+     * @param y
+     */
+    public static void add(byte[] x, byte[] y) {
+
+        int i = x.length;
+        int j = y.length;
+        long carry = 0;
+
+        for (; j >= 8; i -= 8, j -= 8) {
+            long a = (long) LONGS.get(x, i - 8);
+            long b = (long) LONGS.get(y, j - 8);
+            long sum = a + b;
+            long carry_out = Long.compareUnsigned(sum, a) < 0 ? 1 : 0;
+            sum += carry;
+            carry_out |= (carry != 0 && sum == 0) ? 1 : 0;
+            LONGS.set(x, i - 8, sum);
+            carry = carry_out;
+        }
+
+        for (; j > 0; i--, j--) {
+            int sum = (x[i - 1] & 0xFF) + (y[j - 1] & 0xFF) + (int) carry;
+            x[i - 1] = (byte) sum;
+            carry = sum >>> 8;
+        }
+
+        propagate(x, i, carry);
+    }
+
+    /**
+     * x = (x + y) mod 2^len (x) for a non-negative y and x of at least 8 bytes.
+     *
+     * @param x
+     * @param y
+     */
+    public static void add(byte[] x, long y) {
+
+        int i = x.length - 8;
+        long a = (long) LONGS.get(x, i);
+        long sum = a + y;
+        LONGS.set(x, i, sum);
+        propagate(x, i, Long.compareUnsigned(sum, a) < 0 ? 1 : 0);
+    }
+
+    // ----- Local implementation
+
+    private BitArray copy() {
+        BitArray result = new BitArray(len);
+        System.arraycopy(bits, 0, result.bits, 0, bits.length);
+        return result;
+    }
+
+    private static long bit(long pos) {
+        return 1L << (MASK - (pos & MASK));
+    }
+
+    /**
+     * Clears the padding bits right of the length in the last word.
+     */
+    private void trim() {
+        int used = (int) (len & MASK);
+        if (used != 0)
+            bits[bits.length - 1] &= -1L << (64 - used);
+    }
+
+    /**
+     * Ripples a carry into the bytes of <code>x</code> left of <code>end</code>.
+     */
+    private static void propagate(byte[] x, int end, long carry) {
+        for (int i = end - 1; carry != 0 && i >= 0; i--)
+            carry = ++x[i] == 0 ? 1 : 0;
+    }
+}
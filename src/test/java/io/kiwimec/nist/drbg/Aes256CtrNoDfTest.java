@@ -0,0 +1,55 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Known answer tests for CTR_DRBG with AES-256 and no derivation function.
+ *
+ * The vectors are in the AES-256 no df section of the CAVP response files
+ * CTR_DRBG.rsp of the test resources drbgvectors_no_reseed,
+ * drbgvectors_pr_false and drbgvectors_pr_true. Vectors marked CAVP there are
+ * from the NIST drbgvectors, the others were generated with the JDK's SP
+ * 800-90A DRBG.
+ */
+public class Aes256CtrNoDfTest {
+
+    @Test
+    public void aes256NoReseed() {
+        DrbgVectors.No_reseed("CTR_DRBG.rsp", "AES-256 no df", new Aes256CtrNoDf(true), 256);
+    }
+
+    @Test
+    public void aes256Reseed() {
+        DrbgVectors.Reseed("CTR_DRBG.rsp", "AES-256 no df", new Aes256CtrNoDf(true), 256);
+    }
+
+    @Test
+    public void aes256PredictionResistance() {
+        DrbgVectors.Prediction_resistance("CTR_DRBG.rsp", "AES-256 no df", new Aes256CtrNoDf(true), 256);
+    }
+
+    /**
+     * ctr_len is the whole block, so a request may be as long as 2^19 bits.
+     */
+    @Test
+    public void aes256MaxNumberOfBitsPerRequest() {
+
+        Mechanism mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), new Aes256CtrNoDf(false));
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(256, false, null);
+        assertEquals(Status.SUCCESS, instantiated.first);
+        assertEquals(1 << 19, mechanism.getMaxNumberOfBitsPerRequest());
+
+        byte[] pseudorandom_bits = new byte[(1 << 16) + 1];
+        assertEquals(Status.SUCCESS, mechanism.Generate_function(instantiated.second, 1 << 19, 256, false, null,
+                pseudorandom_bits, 0));
+        assertEquals(Status.ERROR_FLAG, mechanism.Generate_function(instantiated.second, (1 << 19) + 8, 256, false,
+                null, pseudorandom_bits, 0));
+    }
+}
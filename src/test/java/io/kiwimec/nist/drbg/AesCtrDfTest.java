@@ -0,0 +1,63 @@
+package io.kiwimec.nist.drbg;
+
+import org.junit.Test;
+
+/**
+ * Known answer tests for CTR_DRBG using a derivation function.
+ *
+ * The vectors are in the use df sections of the CAVP response files
+ * CTR_DRBG.rsp of the test resources drbgvectors_no_reseed,
+ * drbgvectors_pr_false and drbgvectors_pr_true. Vectors marked CAVP there are
+ * from the NIST drbgvectors, the others were generated with the JDK's SP
+ * 800-90A DRBG.
+ */
+public class AesCtrDfTest {
+
+    @Test
+    public void aes128NoReseed() {
+        DrbgVectors.No_reseed("CTR_DRBG.rsp", "AES-128 use df", new AesCtrDf(AesCtrDf.Aes.AES_128, true), 128);
+    }
+
+    @Test
+    public void aes128Reseed() {
+        DrbgVectors.Reseed("CTR_DRBG.rsp", "AES-128 use df", new AesCtrDf(AesCtrDf.Aes.AES_128, true), 128);
+    }
+
+    @Test
+    public void aes128PredictionResistance() {
+        DrbgVectors.Prediction_resistance("CTR_DRBG.rsp", "AES-128 use df", new AesCtrDf(AesCtrDf.Aes.AES_128, true),
+                128);
+    }
+
+    @Test
+    public void aes192NoReseed() {
+        DrbgVectors.No_reseed("CTR_DRBG.rsp", "AES-192 use df", new AesCtrDf(AesCtrDf.Aes.AES_192, true), 192);
+    }
+
+    @Test
+    public void aes192Reseed() {
+        DrbgVectors.Reseed("CTR_DRBG.rsp", "AES-192 use df", new AesCtrDf(AesCtrDf.Aes.AES_192, true), 192);
+    }
+
+    @Test
+    public void aes192PredictionResistance() {
+        DrbgVectors.Prediction_resistance("CTR_DRBG.rsp", "AES-192 use df", new AesCtrDf(AesCtrDf.Aes.AES_192, true),
+                192);
+    }
+
+    @Test
+    public void aes256NoReseed() {
+        DrbgVectors.No_reseed("CTR_DRBG.rsp", "AES-256 use df", new AesCtrDf(AesCtrDf.Aes.AES_256, true), 256);
+    }
+
+    @Test
+    public void aes256Reseed() {
+        DrbgVectors.Reseed("CTR_DRBG.rsp", "AES-256 use df", new AesCtrDf(AesCtrDf.Aes.AES_256, true), 256);
+    }
+
+    @Test
+    public void aes256PredictionResistance() {
+        DrbgVectors.Prediction_resistance("CTR_DRBG.rsp", "AES-256 use df", new AesCtrDf(AesCtrDf.Aes.AES_256, true),
+                256);
+    }
+}
@@ -0,0 +1,119 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.util.Status;
+
+public class DrbgRandomTest {
+
+    private static final int DRAWS = 20000;
+
+    @Test
+    public void nextIntStaysInBound() {
+
+        DrbgRandom random = random();
+        for (int bound : new int[] { 1, 2, 3, 7, 1000, (1 << 30) + 1, Integer.MAX_VALUE }) {
+            for (int n = 0; n < DRAWS; n++) {
+                int value = random.nextInt(bound);
+                assertTrue(bound + ": " + value, value >= 0 && value < bound);
+            }
+        }
+
+        for (int n = 0; n < DRAWS; n++) {
+            int value = random.nextInt(-5, 5);
+            assertTrue(value >= -5 && value < 5);
+            value = random.nextInt(Integer.MIN_VALUE + 1, Integer.MAX_VALUE);
+            assertTrue(value > Integer.MIN_VALUE && value < Integer.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void nextLongStaysInBound() {
+
+        DrbgRandom random = random();
+        for (long bound : new long[] { 1, 2, 3, 7, 1L << 40, (1L << 62) + 1, Long.MAX_VALUE }) {
+            for (int n = 0; n < DRAWS; n++) {
+                long value = random.nextLong(bound);
+                assertTrue(bound + ": " + value, value >= 0 && value < bound);
+            }
+        }
+
+        for (int n = 0; n < DRAWS; n++) {
+            long value = random.nextLong(-5, 5);
+            assertTrue(value >= -5 && value < 5);
+            value = random.nextLong(Long.MIN_VALUE + 1, Long.MAX_VALUE);
+            assertTrue(value > Long.MIN_VALUE && value < Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void smallBoundsAreEven() {
+
+        // Three buckets of DRAWS / 3 each, a biased draw would be far outside
+        // five standard deviations.
+        DrbgRandom random = random();
+        int[] ints = new int[3];
+        int[] longs = new int[3];
+        for (int n = 0; n < DRAWS; n++) {
+            ints[random.nextInt(3)]++;
+            longs[(int) random.nextLong(3)]++;
+        }
+        double sigma = Math.sqrt(DRAWS * (1.0 / 3) * (2.0 / 3));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(DRAWS / 3.0, ints[i], 5 * sigma);
+            assertEquals(DRAWS / 3.0, longs[i], 5 * sigma);
+        }
+    }
+
+    @Test
+    public void nextBytesCrossesBlocks() {
+
+        Mechanism mechanism = FixedSeed.mechanism();
+        Mechanism twin = FixedSeed.mechanism();
+        int state_handle = FixedSeed.instantiate(mechanism, null);
+        int twin_handle = FixedSeed.instantiate(twin, null);
+        DrbgRandom random = new DrbgRandom(mechanism, state_handle, 256, 16);
+
+        // 5 bytes from a first block, 11 more to its end and 9 from a second, the
+        // second's last 7 and 33 generated directly, then 3 from a third block.
+        byte[] bytes = new byte[5 + 20 + 40 + 3];
+        random.nextBytes(bytes, 0, 5);
+        random.nextBytes(bytes, 5, 20);
+        random.nextBytes(bytes, 25, 40);
+        random.nextBytes(bytes, 65, 3);
+
+        byte[] expected = new byte[16 + 16 + 33 + 16];
+        int offset = 0;
+        for (int length : new int[] { 16, 16, 33, 16 }) {
+            assertEquals(Status.SUCCESS, twin.Generate_function(twin_handle, length << 3, 256, false, null,
+                    expected, offset));
+            offset += length;
+        }
+        assertArrayEquals(Arrays.copyOf(expected, bytes.length), bytes);
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void isNotSerializable() throws Exception {
+
+        try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+            out.writeObject(random());
+        }
+    }
+
+    // ----- Local implementation
+
+    private static DrbgRandom random() {
+
+        Mechanism mechanism = FixedSeed.mechanism();
+        return new DrbgRandom(mechanism, FixedSeed.instantiate(mechanism, null), 256);
+    }
+}
@@ -0,0 +1,47 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+
+public class DrbgStreamTest {
+
+    private static DrbgStream stream(long length) {
+
+        Mechanism mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), new Aes256CtrNoDf(false));
+        int state_handle = mechanism.Instantiate_function(256, false, null).second;
+        return new DrbgStream(mechanism, state_handle, 256, false, length);
+    }
+
+    @Test
+    public void transferToAfterRead() throws IOException {
+
+        try (DrbgStream stream = stream(100)) {
+            assertTrue(stream.read() >= 0);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(99, stream.transferTo(out));
+            assertEquals(99, out.size());
+            assertEquals(-1, stream.read());
+        }
+    }
+
+    @Test
+    public void transferToAcrossRequests() throws IOException {
+
+        try (DrbgStream stream = stream(200_000)) {
+            assertTrue(stream.read() >= 0);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertEquals(199_999, stream.transferTo(out));
+            assertEquals(199_999, out.size());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.kiwimec.nist.util.Status;
+
+/**
+ * Runs known answer vectors through an Algorithm following the CAVP DRBG test
+ * procedure (drbgvectors): instantiate, optionally reseed, generate twice and
+ * compare the output of the second generate with ReturnedBits.
+ *
+ * The vectors are read from CAVP response files, test resources named after
+ * the drbgvectors directory and file they mirror, for example
+ * <code>drbgvectors_no_reseed/Hash_DRBG.rsp</code>. Every section headed
+ * <code>[section]</code> is run, a file may repeat a section header for each
+ * combination of input lengths. An empty value is the Null string.
+ */
+final class DrbgVectors {
+
+    private DrbgVectors() {
+    }
+
+    /**
+     * One COUNT of a response file, its fields in file order.
+     */
+    private static final class Vector {
+
+        final String section;
+        final String count;
+        final List<String> names = new ArrayList<String>();
+        final List<String> values = new ArrayList<String>();
+
+        Vector(String section, String count) {
+            this.section = section;
+            this.count = count;
+        }
+
+        /**
+         * The value of the <code>occurrence</code>th field called
+         * <code>name</code>, counting from 0.
+         */
+        String get(String name, int occurrence) {
+            for (int i = 0; i < names.size(); i++)
+                if (names.get(i).equals(name) && occurrence-- == 0)
+                    return values.get(i);
+            return "";
+        }
+
+        String get(String name) {
+            return get(name, 0);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + section + "] COUNT = " + count;
+        }
+    }
+
+    /**
+     * drbgvectors_no_reseed: EntropyInput, Nonce, PersonalizationString,
+     * AdditionalInput, AdditionalInput, ReturnedBits.
+     */
+    static void No_reseed(String file, String section, Algorithm drbg_algorithm, int security_strength) {
+
+        for (Vector vector : read("drbgvectors_no_reseed/" + file, section)) {
+            State working_state = Instantiate(drbg_algorithm, security_strength, vector);
+
+            Generate(drbg_algorithm, working_state, vector.get("AdditionalInput", 0), vector);
+            byte[] returned_bits = Generate(drbg_algorithm, working_state, vector.get("AdditionalInput", 1), vector);
+            assertArrayEquals(vector.toString(), bytes(vector.get("ReturnedBits")), returned_bits);
+        }
+    }
+
+    /**
+     * drbgvectors_pr_false: EntropyInput, Nonce, PersonalizationString,
+     * EntropyInputReseed, AdditionalInputReseed, AdditionalInput,
+     * AdditionalInput, ReturnedBits.
+     */
+    static void Reseed(String file, String section, Algorithm drbg_algorithm, int security_strength) {
+
+        for (Vector vector : read("drbgvectors_pr_false/" + file, section)) {
+            State working_state = Instantiate(drbg_algorithm, security_strength, vector);
+            drbg_algorithm.Reseed_algorithm(working_state, bytes(vector.get("EntropyInputReseed")),
+                    buffer(vector.get("AdditionalInputReseed")));
+
+            Generate(drbg_algorithm, working_state, vector.get("AdditionalInput", 0), vector);
+            byte[] returned_bits = Generate(drbg_algorithm, working_state, vector.get("AdditionalInput", 1), vector);
+            assertArrayEquals(vector.toString(), bytes(vector.get("ReturnedBits")), returned_bits);
+        }
+    }
+
+    /**
+     * drbgvectors_pr_true: EntropyInput, Nonce, PersonalizationString,
+     * AdditionalInput, EntropyInputPR, AdditionalInput, EntropyInputPR,
+     * ReturnedBits. Each generate is preceded by a reseed with its
+     * EntropyInputPR and AdditionalInput, and then generates with no additional
+     * input, as in 9.3.1 step 9.
+     */
+    static void Prediction_resistance(String file, String section, Algorithm drbg_algorithm,
+            int security_strength) {
+
+        for (Vector vector : read("drbgvectors_pr_true/" + file, section)) {
+            State working_state = Instantiate(drbg_algorithm, security_strength, vector);
+
+            drbg_algorithm.Reseed_algorithm(working_state, bytes(vector.get("EntropyInputPR", 0)),
+                    buffer(vector.get("AdditionalInput", 0)));
+            Generate(drbg_algorithm, working_state, "", vector);
+            drbg_algorithm.Reseed_algorithm(working_state, bytes(vector.get("EntropyInputPR", 1)),
+                    buffer(vector.get("AdditionalInput", 1)));
+            byte[] returned_bits = Generate(drbg_algorithm, working_state, "", vector);
+            assertArrayEquals(vector.toString(), bytes(vector.get("ReturnedBits")), returned_bits);
+        }
+    }
+
+    // ----- Local implementation
+
+    private static State Instantiate(Algorithm drbg_algorithm, int security_strength, Vector vector) {
+
+        return drbg_algorithm.Instantiate_algorithm(bytes(vector.get("EntropyInput")), bytes(vector.get("Nonce")),
+                buffer(vector.get("PersonalizationString")), security_strength);
+    }
+
+    /**
+     * Generates as many bits as ReturnedBits holds.
+     */
+    private static byte[] Generate(Algorithm drbg_algorithm, State working_state, String additional_input,
+            Vector vector) {
+
+        byte[] returned_bits = new byte[vector.get("ReturnedBits").length() / 2];
+        assertEquals(vector.toString(), Status.SUCCESS, drbg_algorithm.Generate_algorithm(working_state,
+                returned_bits.length << 3, buffer(additional_input), returned_bits, 0));
+        return returned_bits;
+    }
+
+    /**
+     * The vectors of every <code>[section]</code> of the response file
+     * <code>name</code>. Lines starting with # are comments and the other
+     * bracketed headers, such as [ReturnedBitsLen = 512], are skipped.
+     */
+    private static List<Vector> read(String name, String section) {
+
+        InputStream in = DrbgVectors.class.getResourceAsStream(name);
+        assertNotNull(name, in);
+
+        List<Vector> vectors = new ArrayList<Vector>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII))) {
+            String current = null;
+            Vector vector = null;
+            for (String line; (line = reader.readLine()) != null;) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                if (line.startsWith("[")) {
+                    if (!line.contains("="))
+                        current = line.substring(1, line.length() - 1);
+                    vector = null;
+                    continue;
+                }
+                if (!section.equals(current))
+                    continue;
+
+                int equals = line.indexOf('=');
+                String field = line.substring(0, equals).trim();
+                String value = line.substring(equals + 1).trim();
+                if (field.equals("COUNT"))
+                    vectors.add(vector = new Vector(current, value));
+                else if (vector != null) {
+                    vector.names.add(field);
+                    vector.values.add(value);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        assertTrue(name + " has no [" + section + "] vectors", !vectors.isEmpty());
+        return vectors;
+    }
+
+    private static ByteBuffer buffer(String hex) {
+
+        return hex.isEmpty() ? null : ByteBuffer.wrap(bytes(hex));
+    }
+
+    private static byte[] bytes(String hex) {
+
+        if (hex.isEmpty())
+            return null;
+
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        return bytes;
+    }
+}
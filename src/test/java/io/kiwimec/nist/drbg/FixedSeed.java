@@ -0,0 +1,64 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import io.kiwimec.nist.source.Entropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+/**
+ * Mechanisms seeded with the same entropy input and nonce every time, so two
+ * of them instantiated alike produce the same output. Tests compare an API
+ * under test against plain Generate_function calls on a twin.
+ */
+final class FixedSeed {
+
+    private FixedSeed() {
+    }
+
+    private static final Entropy ENTROPY = (strength, min_length, max_length, prediction_resistance_request) -> {
+        byte[] entropy_input = new byte[(min_length + 7) >>> 3];
+        Arrays.fill(entropy_input, (byte) 0x5A);
+        return new Tuple2<Status, byte[]>(Status.SUCCESS, entropy_input);
+    };
+
+    private static final class FixedNonce extends Nonce {
+
+        @Override
+        public byte[] Get_nonce(int security_strength) {
+            byte[] nonce = new byte[(security_strength + 15) >>> 4];
+            Arrays.fill(nonce, (byte) 0xA5);
+            return nonce;
+        }
+    }
+
+    /**
+     * A Hash_DRBG SHA-256 mechanism without prediction resistance.
+     */
+    static Mechanism mechanism() {
+
+        return new Mechanism(ENTROPY, new FixedNonce(), new HashDrbg(HashDrbg.Hash.SHA_256, false));
+    }
+
+    /**
+     * Instantiates at 256 bits, told apart from other instantiations by
+     * <code>personalization_string</code>.
+     */
+    static int instantiate(Mechanism mechanism, String personalization_string) {
+
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(256, false,
+                buffer(personalization_string));
+        assertEquals(Status.SUCCESS, instantiated.first);
+        return instantiated.second;
+    }
+
+    static ByteBuffer buffer(String input) {
+
+        return input == null ? null : ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII));
+    }
+}
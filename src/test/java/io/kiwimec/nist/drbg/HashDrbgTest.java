@@ -0,0 +1,44 @@
+package io.kiwimec.nist.drbg;
+
+import org.junit.Test;
+
+/**
+ * Known answer tests for Hash_DRBG.
+ *
+ * The vectors are in the CAVP response files Hash_DRBG.rsp of the test
+ * resources drbgvectors_no_reseed, drbgvectors_pr_false and
+ * drbgvectors_pr_true. Vectors marked CAVP there are from the NIST drbgvectors,
+ * the others were generated with the JDK's SP 800-90A DRBG.
+ */
+public class HashDrbgTest {
+
+    @Test
+    public void sha256NoReseed() {
+        DrbgVectors.No_reseed("Hash_DRBG.rsp", "SHA-256", new HashDrbg(HashDrbg.Hash.SHA_256, true), 256);
+    }
+
+    @Test
+    public void sha256Reseed() {
+        DrbgVectors.Reseed("Hash_DRBG.rsp", "SHA-256", new HashDrbg(HashDrbg.Hash.SHA_256, true), 256);
+    }
+
+    @Test
+    public void sha256PredictionResistance() {
+        DrbgVectors.Prediction_resistance("Hash_DRBG.rsp", "SHA-256", new HashDrbg(HashDrbg.Hash.SHA_256, true), 256);
+    }
+
+    @Test
+    public void sha512NoReseed() {
+        DrbgVectors.No_reseed("Hash_DRBG.rsp", "SHA-512", new HashDrbg(HashDrbg.Hash.SHA_512, true), 256);
+    }
+
+    @Test
+    public void sha512Reseed() {
+        DrbgVectors.Reseed("Hash_DRBG.rsp", "SHA-512", new HashDrbg(HashDrbg.Hash.SHA_512, true), 256);
+    }
+
+    @Test
+    public void sha512PredictionResistance() {
+        DrbgVectors.Prediction_resistance("Hash_DRBG.rsp", "SHA-512", new HashDrbg(HashDrbg.Hash.SHA_512, true), 256);
+    }
+}
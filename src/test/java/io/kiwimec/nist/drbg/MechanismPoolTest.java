@@ -0,0 +1,117 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+public class MechanismPoolTest {
+
+    private static final int STRIPES = 4;
+    private static final int THREADS = 8;
+    private static final int REQUESTS = 2000;
+
+    @Test
+    public void instantiatesEveryStripeOnce() {
+
+        MechanismPool pool = pool();
+        assertEquals(Status.SUCCESS, pool.Instantiate_function(256, false, null));
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+            assertTrue(pool.getStateHandle(stripe) != Mechanism.Invalid);
+
+        assertEquals(Status.ERROR_FLAG, pool.Instantiate_function(256, false, null));
+    }
+
+    @Test
+    public void concurrentRequestsAreAllAccounted() throws Exception {
+
+        MechanismPool pool = pool();
+        assertEquals(Status.SUCCESS, pool.Instantiate_function(256, false, null));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<ByteBuffer>>> futures = new ArrayList<Future<List<ByteBuffer>>>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    List<ByteBuffer> outputs = new ArrayList<ByteBuffer>(REQUESTS);
+                    start.await();
+                    for (int n = 0; n < REQUESTS; n++) {
+                        Tuple2<Status, byte[]> generated = pool.Generate_function(128, 256, false, null);
+                        assertEquals(Status.SUCCESS, generated.first);
+                        outputs.add(ByteBuffer.wrap(generated.second));
+                    }
+                    return outputs;
+                }));
+            }
+            start.countDown();
+
+            // Independent stripes never repeat each other's output.
+            Set<ByteBuffer> seen = new HashSet<ByteBuffer>();
+            for (Future<List<ByteBuffer>> future : futures)
+                seen.addAll(future.get());
+            assertEquals(THREADS * REQUESTS, seen.size());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long requests = 0;
+        long bytes = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            requests += pool.getRequestCount(stripe);
+            bytes += pool.getByteCount(stripe);
+        }
+        assertEquals(THREADS * REQUESTS, requests);
+        assertEquals(THREADS * REQUESTS * 16L, bytes);
+    }
+
+    @Test
+    public void reseedReachesEveryStripe() {
+
+        MechanismPool pool = pool();
+        assertEquals(Status.SUCCESS, pool.Instantiate_function(256, false, null));
+        assertEquals(Status.SUCCESS, pool.Reseed_function(false, null));
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+            assertEquals(1, pool.getReseedCount(stripe));
+    }
+
+    @Test
+    public void uninstantiatedPoolFails() {
+
+        MechanismPool pool = pool();
+        assertEquals(Status.ERROR_FLAG, pool.Generate_function(128, 256, false, null).first);
+
+        assertEquals(Status.SUCCESS, pool.Instantiate_function(256, false, null));
+        assertEquals(Status.SUCCESS, pool.Uninstantiate_function());
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+            assertEquals(Mechanism.Invalid, pool.getStateHandle(stripe));
+        assertEquals(Status.ERROR_FLAG, pool.Generate_function(128, 256, false, null, new byte[16], 0));
+
+        // It can be instantiated again.
+        assertEquals(Status.SUCCESS, pool.Instantiate_function(256, false, null));
+        assertEquals(Status.SUCCESS, pool.Generate_function(128, 256, false, null).first);
+    }
+
+    // ----- Local implementation
+
+    private static MechanismPool pool() {
+
+        return new MechanismPool(new SecureRandomEntropy(), new Nonce(), new HashDrbg(HashDrbg.Hash.SHA_256, false),
+                STRIPES);
+    }
+}
@@ -0,0 +1,175 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.source.Entropy;
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+public class MechanismTest {
+
+    /**
+     * A source whose start-up test fails but which does not latch the failure.
+     */
+    private static final class FailedStartup implements Entropy {
+
+        private final Entropy source = new SecureRandomEntropy();
+
+        @Override
+        public Tuple2<Status, byte[]> Get_entropy_input(int requested_instantiation_security_strength,
+                int min_length, int max_length, boolean prediction_resistance_request) {
+            return source.Get_entropy_input(requested_instantiation_security_strength, min_length, max_length,
+                    prediction_resistance_request);
+        }
+
+        @Override
+        public Status Startup_test() {
+            return Status.CATASTROPHIC_ERROR_FLAG;
+        }
+    }
+
+    @Test
+    public void batchMatchesSingleRequests() {
+
+        Mechanism batched = FixedSeed.mechanism();
+        Mechanism single = FixedSeed.mechanism();
+        int a = FixedSeed.instantiate(batched, "a");
+        int b = FixedSeed.instantiate(batched, "b");
+        int single_a = FixedSeed.instantiate(single, "a");
+        int single_b = FixedSeed.instantiate(single, "b");
+
+        // The requests of a are not adjacent, and neither are those of b.
+        int[] state_handles = { a, b, a, b, a };
+        int[] single_handles = { single_a, single_b, single_a, single_b, single_a };
+        int[] requested_number_of_bits = { 8, 13, 0, 64, 7 };
+        String[] additional_input = { "0", null, "2", "3", null };
+
+        byte[] pseudorandom_bits = new byte[3 + 1 + 2 + 0 + 8 + 1];
+        int[] offsets = new int[5];
+        Status[] statuses = new Status[5];
+        assertEquals(Status.SUCCESS, batched.Generate_function(state_handles, requested_number_of_bits, 256,
+                buffers(additional_input), pseudorandom_bits, 3, offsets, statuses));
+        assertArrayEquals(new int[] { 3, 4, 6, 6, 14 }, offsets);
+
+        byte[] expected = new byte[pseudorandom_bits.length];
+        for (int i = 0; i < state_handles.length; i++) {
+            assertEquals(Status.SUCCESS, statuses[i]);
+            assertEquals(Status.SUCCESS, single.Generate_function(single_handles[i], requested_number_of_bits[i],
+                    256, false, FixedSeed.buffer(additional_input[i]), expected, offsets[i]));
+        }
+        assertArrayEquals(expected, pseudorandom_bits);
+    }
+
+    @Test
+    public void batchReportsEachRequest() {
+
+        Mechanism mechanism = FixedSeed.mechanism();
+        int a = FixedSeed.instantiate(mechanism, "a");
+        int stale = FixedSeed.instantiate(mechanism, "stale");
+        assertEquals(Status.SUCCESS, mechanism.Uninstantiate_function(stale));
+
+        int[] state_handles = { a, Mechanism.Invalid, a, stale, 12345 };
+        int[] requested_number_of_bits = { 64, 64, 64, 64, 64 };
+        Status[] statuses = new Status[5];
+        assertEquals(Status.ERROR_FLAG, mechanism.Generate_function(state_handles, requested_number_of_bits, 256,
+                null, new byte[40], 0, new int[5], statuses));
+        assertArrayEquals(new Status[] { Status.SUCCESS, Status.ERROR_FLAG, Status.SUCCESS, Status.ERROR_FLAG,
+                Status.ERROR_FLAG }, statuses);
+    }
+
+    @Test
+    public void batchNeedsRoomForEveryRequest() {
+
+        Mechanism batched = FixedSeed.mechanism();
+        Mechanism single = FixedSeed.mechanism();
+        int a = FixedSeed.instantiate(batched, "a");
+        int single_a = FixedSeed.instantiate(single, "a");
+
+        Status[] statuses = new Status[2];
+        assertEquals(Status.ERROR_FLAG, batched.Generate_function(new int[] { a, a }, new int[] { 64, 65 }, 256,
+                null, new byte[20], 4, new int[2], statuses));
+        assertNull(statuses[0]);
+        assertNull(statuses[1]);
+
+        // Nothing was generated, a is where it started.
+        byte[] pseudorandom_bits = new byte[8];
+        byte[] expected = new byte[8];
+        assertEquals(Status.SUCCESS, batched.Generate_function(a, 64, 256, false, null, pseudorandom_bits, 0));
+        assertEquals(Status.SUCCESS, single.Generate_function(single_a, 64, 256, false, null, expected, 0));
+        assertArrayEquals(expected, pseudorandom_bits);
+    }
+
+    @Test
+    public void failedStartupTestRefusesEntropy() {
+
+        Mechanism mechanism = new Mechanism(new FailedStartup(), new Nonce(), new HashDrbg(HashDrbg.Hash.SHA_256,
+                true));
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(256, false, null);
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, instantiated.first);
+        assertEquals(Mechanism.Invalid, (int) instantiated.second);
+    }
+
+    @Test
+    public void uninstantiateErasesWorkingState() {
+
+        HashDrbg.WorkingState hash = (HashDrbg.WorkingState) erased(new HashDrbg(HashDrbg.Hash.SHA_256, true));
+        assertZero(hash.V);
+        assertZero(hash.C);
+        assertZero(hash.temp);
+
+        HmacDrbg.WorkingState hmac = (HmacDrbg.WorkingState) erased(new HmacDrbg(HmacDrbg.Hash.SHA_256, true));
+        assertZero(hmac.V);
+        assertZero(hmac.Key);
+
+        AesCtrDf.WorkingState ctr = (AesCtrDf.WorkingState) erased(new AesCtrDf(AesCtrDf.Aes.AES_256, true));
+        assertZero(ctr.V);
+        assertZero(ctr.Key);
+        assertZero(ctr.seed_material);
+        assertZero(ctr.counter_blocks);
+
+        Aes256CtrNoDf.WorkingState no_df = (Aes256CtrNoDf.WorkingState) erased(new Aes256CtrNoDf(true));
+        assertZero(no_df.V);
+        assertZero(no_df.Key);
+        assertZero(no_df.counter_blocks);
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Instantiates, generates and uninstantiates, returning the state the handle
+     * indicated.
+     */
+    private static State erased(Algorithm drbg_algorithm) {
+
+        Mechanism mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), drbg_algorithm);
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(256, false, null);
+        assertEquals(Status.SUCCESS, instantiated.first);
+        assertEquals(Status.SUCCESS, mechanism.Generate_function(instantiated.second, 1024, 256, false, null).first);
+
+        State internal_state = mechanism.getState(instantiated.second);
+        assertEquals(Status.SUCCESS, mechanism.Uninstantiate_function(instantiated.second));
+        assertEquals(Mechanism.Invalid, internal_state.handle);
+        return internal_state;
+    }
+
+    private static ByteBuffer[] buffers(String[] inputs) {
+
+        ByteBuffer[] buffers = new ByteBuffer[inputs.length];
+        for (int i = 0; i < inputs.length; i++)
+            buffers[i] = FixedSeed.buffer(inputs[i]);
+        return buffers;
+    }
+
+    private static void assertZero(byte[] bytes) {
+
+        assertArrayEquals(new byte[bytes.length], bytes);
+    }
+}
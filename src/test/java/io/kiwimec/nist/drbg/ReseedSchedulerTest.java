@@ -0,0 +1,73 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.util.Status;
+
+public class ReseedSchedulerTest {
+
+    private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    @Test
+    public void dueInstantiationIsReseeded() throws InterruptedException {
+
+        Mechanism mechanism = FixedSeed.mechanism();
+        int due = FixedSeed.instantiate(mechanism, "due");
+        int idle = FixedSeed.instantiate(mechanism, "idle");
+
+        try (ReseedScheduler scheduler = new ReseedScheduler(0, 64, 0, PERIOD, 4)) {
+            scheduler.register(mechanism, due);
+            scheduler.register(mechanism, idle);
+            generate(mechanism, due, 128);
+
+            long start = System.nanoTime();
+            while (scheduler.getReseedCount() == 0 && System.nanoTime() - start < TIMEOUT)
+                Thread.sleep(1);
+            assertEquals(1, scheduler.getReseedCount());
+            assertEquals(0, mechanism.getState(due).reseed_bytes);
+            assertEquals(1, mechanism.getState(due).reseed_counter);
+
+            // The idle instantiation never comes due.
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(5 * PERIOD));
+            assertEquals(1, scheduler.getReseedCount());
+            assertEquals(0, scheduler.getFailureCount());
+        }
+    }
+
+    @Test
+    public void uninstantiatedInstantiationIsDropped() throws InterruptedException {
+
+        Mechanism mechanism = FixedSeed.mechanism();
+        int state_handle = FixedSeed.instantiate(mechanism, "dropped");
+
+        try (ReseedScheduler scheduler = new ReseedScheduler(0, 64, 0, TimeUnit.MILLISECONDS.toNanos(200), 4)) {
+            scheduler.register(mechanism, state_handle);
+            generate(mechanism, state_handle, 128);
+            assertEquals(Status.SUCCESS, mechanism.Uninstantiate_function(state_handle));
+
+            // The slot is reused under a new handle, which was never registered.
+            int successor = FixedSeed.instantiate(mechanism, "successor");
+            assertTrue(successor != state_handle);
+            generate(mechanism, successor, 128);
+
+            Thread.sleep(600);
+            assertEquals(0, scheduler.getReseedCount());
+            assertEquals(0, scheduler.getFailureCount());
+            assertEquals(128, mechanism.getState(successor).reseed_bytes);
+        }
+    }
+
+    // ----- Local implementation
+
+    private static void generate(Mechanism mechanism, int state_handle, int bytes) {
+
+        assertEquals(Status.SUCCESS, mechanism.Generate_function(state_handle, bytes << 3, 256, false, null,
+                new byte[bytes], 0));
+    }
+}
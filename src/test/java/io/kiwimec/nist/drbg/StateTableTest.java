@@ -0,0 +1,51 @@
+package io.kiwimec.nist.drbg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.source.Nonce;
+import io.kiwimec.nist.source.SecureRandomEntropy;
+import io.kiwimec.nist.util.Status;
+
+public class StateTableTest {
+
+    // More than the 2047 generations a slot has.
+    private static final int CYCLES = 5000;
+
+    @Test
+    public void removedHandleIsNeverReissued() {
+
+        StateTable table = new StateTable();
+        int stale = table.add(new State());
+        table.remove(stale);
+
+        for (int i = 0; i < CYCLES; i++) {
+            State state = new State();
+            int state_handle = table.add(state);
+            assertNotEquals("cycle " + i, stale, state_handle);
+            assertNull("cycle " + i, table.get(stale));
+            assertSame(state, table.get(state_handle));
+            assertSame(state, table.remove(state_handle));
+        }
+    }
+
+    @Test
+    public void staleHandleCannotGenerate() {
+
+        Mechanism mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(), new HashDrbg(HashDrbg.Hash.SHA_256,
+                false));
+        int stale = mechanism.Instantiate_function(256, false, null).second;
+        assertEquals(Status.SUCCESS, mechanism.Uninstantiate_function(stale));
+
+        for (int i = 0; i < CYCLES; i++) {
+            int state_handle = mechanism.Instantiate_function(256, false, null).second;
+            assertNotEquals("cycle " + i, stale, state_handle);
+            assertEquals(Status.ERROR_FLAG, mechanism.Generate_function(stale, 128, 256, false, null).first);
+            assertEquals(Status.SUCCESS, mechanism.Uninstantiate_function(state_handle));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.kiwimec.nist.provider;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.drbg.HashDrbg;
+
+public class DrbgSecureRandomTest {
+
+    @Test(expected = NotSerializableException.class)
+    public void isNotSerializable() throws Exception {
+
+        try (ObjectOutputStream out = new ObjectOutputStream(new ByteArrayOutputStream())) {
+            out.writeObject(new DrbgSecureRandom(new HashDrbg(HashDrbg.Hash.SHA_256, false)));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.kiwimec.nist.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+public class CombinedEntropyTest {
+
+    /**
+     * Delivers zeros of the requested length, remembering the length asked for.
+     */
+    private static final class Recording implements Entropy {
+
+        volatile int min_length;
+
+        @Override
+        public Tuple2<Status, byte[]> Get_entropy_input(int requested_instantiation_security_strength,
+                int min_length, int max_length, boolean prediction_resistance_request) {
+            this.min_length = min_length;
+            return new Tuple2<Status, byte[]>(Status.SUCCESS, new byte[(min_length + 7) >>> 3]);
+        }
+    }
+
+    @Test
+    public void asksEachSourceForFullEntropyMargin() {
+
+        Recording first = new Recording();
+        Recording second = new Recording();
+        try (CombinedEntropy combined = new CombinedEntropy(2, TimeUnit.SECONDS.toNanos(5), first, second)) {
+            Tuple2<Status, byte[]> entropy_input = combined.Get_entropy_input(256, 384, 384, false);
+            assertEquals(Status.SUCCESS, entropy_input.first);
+            assertEquals(48, entropy_input.second.length);
+            assertEquals(448, first.min_length);
+            assertEquals(448, second.min_length);
+        }
+    }
+
+    @Test
+    public void stalledSourceDoesNotBlock() {
+
+        CountDownLatch release = new CountDownLatch(1);
+        Entropy stalled = (strength, min_length, max_length, prediction_resistance_request) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+        };
+
+        try (CombinedEntropy combined = new CombinedEntropy(1, TimeUnit.MILLISECONDS.toNanos(50), stalled,
+                new Recording())) {
+            long start = System.nanoTime();
+            assertEquals(Status.SUCCESS, combined.Get_entropy_input(256, 256, 256, false).first);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.kiwimec.nist.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+public class EntropyPoolTest {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+    private static final Entropy SOURCE = new SecureRandomEntropy();
+
+    private static boolean isProducer() {
+        return Thread.currentThread().getName().equals("entropy-pool");
+    }
+
+    @Test
+    public void prefetchesToHighWatermark() throws InterruptedException {
+
+        try (EntropyPool pool = new EntropyPool(SOURCE, 64, 2, 8)) {
+            assertEquals(0, pool.getDepth());
+            pool.start();
+            awaitDepth(pool, 8);
+
+            Tuple2<Status, byte[]> entropy_input = pool.Get_entropy_input(256, 128, 128, true);
+            assertEquals(Status.SUCCESS, entropy_input.first);
+            assertEquals(16, entropy_input.second.length);
+            assertEquals(6, pool.getDepth());
+            assertEquals(0, pool.getStallCount());
+
+            // Draining to the low watermark wakes the producer.
+            pool.Get_entropy_input(256, 256, 256, true);
+            awaitDepth(pool, 8);
+            assertEquals(0, pool.getStallCount());
+            assertEquals(2, pool.getServedCount());
+        }
+    }
+
+    @Test
+    public void slowSourceStalls() {
+
+        CountDownLatch release = new CountDownLatch(1);
+        Entropy slow = (strength, min_length, max_length, prediction_resistance_request) -> {
+            if (isProducer()) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+                }
+            }
+            return SOURCE.Get_entropy_input(strength, min_length, max_length, prediction_resistance_request);
+        };
+
+        try (EntropyPool pool = new EntropyPool(slow, 64, 2, 8).start()) {
+            Tuple2<Status, byte[]> entropy_input = pool.Get_entropy_input(256, 256, 256, true);
+            assertEquals(Status.SUCCESS, entropy_input.first);
+            assertEquals(32, entropy_input.second.length);
+            assertEquals(1, pool.getStallCount());
+            assertEquals(0, pool.getDepth());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void closedPoolFails() throws InterruptedException {
+
+        EntropyPool pool = new EntropyPool(SOURCE, 64, 2, 8).start();
+        awaitDepth(pool, 8);
+        pool.close();
+
+        assertEquals(0, pool.getDepth());
+        assertEquals(Status.ERROR_FLAG, pool.Get_entropy_input(256, 256, 256, true).first);
+
+        // Not started again.
+        pool.start();
+        Thread.sleep(50);
+        assertEquals(0, pool.getDepth());
+        assertEquals(Status.ERROR_FLAG, pool.Get_entropy_input(256, 256, 256, false).first);
+    }
+
+    @Test
+    public void deadProducerFails() throws InterruptedException {
+
+        Entropy throwing = (strength, min_length, max_length, prediction_resistance_request) -> {
+            if (isProducer())
+                throw new IllegalStateException("Source failed");
+            return SOURCE.Get_entropy_input(strength, min_length, max_length, prediction_resistance_request);
+        };
+
+        try (EntropyPool pool = new EntropyPool(throwing, 64, 2, 8).start()) {
+            long start = System.nanoTime();
+            Status status;
+            do {
+                status = pool.Get_entropy_input(256, 256, 256, true).first;
+                if (status == Status.SUCCESS)
+                    Thread.sleep(1);
+            } while (status == Status.SUCCESS && System.nanoTime() - start < TIMEOUT);
+
+            assertEquals(Status.ERROR_FLAG, status);
+            assertEquals(Status.ERROR_FLAG, pool.Get_entropy_input(256, 256, 256, false).first);
+        }
+    }
+
+    // ----- Local implementation
+
+    private static void awaitDepth(EntropyPool pool, int depth) throws InterruptedException {
+
+        long start = System.nanoTime();
+        while (pool.getDepth() < depth && System.nanoTime() - start < TIMEOUT)
+            Thread.sleep(1);
+        assertTrue("depth " + pool.getDepth(), pool.getDepth() >= depth);
+    }
+}
@@ -0,0 +1,154 @@
+package io.kiwimec.nist.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.kiwimec.nist.util.Status;
+
+public class HealthTestTest {
+
+    private static final int WINDOW = 512;
+
+    @Test
+    public void cutoffsForFullEntropyBytes() {
+
+        HealthTest health_test = new HealthTest();
+        assertEquals(6, health_test.getRepetitionCutoff());
+        assertEquals(19, health_test.getProportionCutoff());
+    }
+
+    @Test
+    public void cutoffsMatchExactBinomialTail() {
+
+        for (int h : new int[] { 1, 2, 4, 8 }) {
+            HealthTest health_test = new HealthTest(h);
+            assertEquals("H = " + h, 1 + (int) Math.ceil(40.0 / h), health_test.getRepetitionCutoff());
+            assertEquals("H = " + h, proportionCutoff(h), health_test.getProportionCutoff());
+        }
+    }
+
+    @Test
+    public void repetitionCountTestTripsOnStuckSource() {
+
+        HealthTest health_test = new HealthTest();
+        int cutoff = health_test.getRepetitionCutoff();
+
+        assertEquals(Status.SUCCESS, health_test.Startup_test(withRun(cutoff - 1)));
+
+        health_test = new HealthTest();
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.Startup_test(withRun(cutoff)));
+
+        health_test = new HealthTest();
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.Startup_test(new byte[HealthTest.STARTUP_SAMPLES]));
+    }
+
+    @Test
+    public void repetitionCountCarriesAcrossCalls() {
+
+        HealthTest health_test = new HealthTest();
+        int cutoff = health_test.getRepetitionCutoff();
+        assertEquals(Status.SUCCESS, health_test.Startup_test(distinct(HealthTest.STARTUP_SAMPLES)));
+
+        byte[] stuck = new byte[cutoff];
+        Arrays.fill(stuck, (byte) 0x5A);
+        assertEquals(Status.SUCCESS, health_test.Continuous_test(stuck, 0, cutoff - 1));
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.Continuous_test(stuck, cutoff - 1, 1));
+    }
+
+    @Test
+    public void adaptiveProportionTestTripsOnBiasedSource() {
+
+        HealthTest health_test = new HealthTest();
+        int cutoff = health_test.getProportionCutoff();
+
+        assertEquals(Status.SUCCESS, health_test.Startup_test(biased(cutoff - 1)));
+
+        health_test = new HealthTest();
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.Startup_test(biased(cutoff)));
+    }
+
+    @Test
+    public void failureLatches() {
+
+        HealthTest health_test = new HealthTest();
+        assertFalse(health_test.isStarted());
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.Startup_test(new byte[HealthTest.STARTUP_SAMPLES]));
+        assertTrue(health_test.isStarted());
+
+        byte[] good = distinct(HealthTest.STARTUP_SAMPLES);
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.Continuous_test(good, 0, good.length));
+        assertEquals(Status.CATASTROPHIC_ERROR_FLAG, health_test.getStatus());
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Samples cycling through every byte value, no repetitions and each value
+     * twice per window.
+     */
+    private static byte[] distinct(int length) {
+
+        byte[] samples = new byte[length];
+        for (int i = 0; i < length; i++)
+            samples[i] = (byte) i;
+        return samples;
+    }
+
+    /**
+     * Start-up samples with one run of <code>run</code> equal samples.
+     */
+    private static byte[] withRun(int run) {
+
+        byte[] samples = distinct(HealthTest.STARTUP_SAMPLES);
+        Arrays.fill(samples, 100, 100 + run, (byte) 0xA5);
+        return samples;
+    }
+
+    /**
+     * Start-up samples whose first window holds <code>count</code> copies of
+     * its first sample, never adjacent.
+     */
+    private static byte[] biased(int count) {
+
+        byte[] samples = new byte[HealthTest.STARTUP_SAMPLES];
+        int filler = 0;
+        for (int i = 0; i < samples.length; i++) {
+            if (i < 2 * count && i % 2 == 0) {
+                samples[i] = (byte) 0xA5;
+            } else {
+                if ((filler & 0xFF) == 0xA5)
+                    filler++;
+                samples[i] = (byte) filler++;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 1 + CRITBINOM(W, 2^-H, 1 - 2^-40) by exact arithmetic: one more than the
+     * least k with P(X > k) <= 2^-40.
+     */
+    private static int proportionCutoff(int h) {
+
+        BigInteger other = BigInteger.ONE.shiftLeft(h).subtract(BigInteger.ONE);
+        BigInteger total = BigInteger.ONE.shiftLeft(h * WINDOW);
+
+        // tail = 2^(H W) P(X > k), starting from k = W and working down.
+        BigInteger tail = BigInteger.ZERO;
+        BigInteger binomial = BigInteger.ONE;
+        for (int k = WINDOW; k > 0; k--) {
+            BigInteger next = tail.add(binomial.multiply(other.pow(WINDOW - k)));
+            if (next.shiftLeft(40).compareTo(total) > 0)
+                return 1 + k;
+            tail = next;
+            binomial = binomial.multiply(BigInteger.valueOf(k)).divide(BigInteger.valueOf(WINDOW - k + 1));
+        }
+        return 1;
+    }
+}
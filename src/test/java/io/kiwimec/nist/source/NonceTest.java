@@ -0,0 +1,85 @@
+package io.kiwimec.nist.source;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class NonceTest {
+
+    private static final int THREADS = 8;
+    private static final int NONCES = 20000;
+
+    @Test
+    public void timestampCounterIsUniqueUnderContention() throws Exception {
+
+        assertUnique(new Nonce(Nonce.Option.TIMESTAMP_COUNTER));
+    }
+
+    @Test
+    public void timestampIsUniqueUnderContention() throws Exception {
+
+        assertUnique(new Nonce(Nonce.Option.TIMESTAMP));
+    }
+
+    @Test
+    public void counterIsUniqueUnderContention() throws Exception {
+
+        assertUnique(new Nonce(Nonce.Option.COUNTER));
+    }
+
+    @Test
+    public void randomIsUniqueUnderContention() throws Exception {
+
+        assertUnique(new Nonce(Nonce.Option.RANDOM));
+    }
+
+    @Test
+    public void randomHasHalfTheSecurityStrength() {
+
+        Nonce nonce = new Nonce(Nonce.Option.RANDOM);
+        assertEquals(8, nonce.Get_nonce(128).length);
+        assertEquals(16, nonce.Get_nonce(256).length);
+    }
+
+    // ----- Local implementation
+
+    /**
+     * Has THREADS threads take NONCES nonces each, all released at once, and
+     * checks that no two are equal.
+     */
+    private static void assertUnique(Nonce nonce) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<ByteBuffer>>> futures = new ArrayList<Future<List<ByteBuffer>>>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    List<ByteBuffer> nonces = new ArrayList<ByteBuffer>(NONCES);
+                    start.await();
+                    for (int n = 0; n < NONCES; n++)
+                        nonces.add(ByteBuffer.wrap(nonce.Get_nonce(256)));
+                    return nonces;
+                }));
+            }
+            start.countDown();
+
+            Set<ByteBuffer> seen = new HashSet<ByteBuffer>();
+            for (Future<List<ByteBuffer>> future : futures)
+                seen.addAll(future.get());
+            assertEquals(THREADS * NONCES, seen.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
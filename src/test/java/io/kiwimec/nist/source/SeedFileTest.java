@@ -0,0 +1,173 @@
+package io.kiwimec.nist.source;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.kiwimec.nist.drbg.HashDrbg;
+import io.kiwimec.nist.drbg.Mechanism;
+import io.kiwimec.nist.util.Status;
+import io.kiwimec.nist.util.Tuple2;
+
+public class SeedFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Delivers the requested length of one repeated byte.
+     */
+    private static Entropy constant(byte value) {
+
+        return (strength, min_length, max_length, prediction_resistance_request) -> {
+            byte[] entropy_input = new byte[(min_length + 7) >>> 3];
+            Arrays.fill(entropy_input, value);
+            return new Tuple2<Status, byte[]>(Status.SUCCESS, entropy_input);
+        };
+    }
+
+    private static final Entropy FAILING = (strength, min_length, max_length, prediction_resistance_request) ->
+            new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+
+    @Test
+    public void successorDiffersFromLoadedSeed() throws Exception {
+
+        byte[] seed = seed();
+        Path file = write("seed", seed);
+
+        SeedFile seed_file = new SeedFile(FAILING, file);
+        seed_file.refresh.get(5, TimeUnit.SECONDS);
+        assertTrue(seed_file.hasSeed());
+
+        byte[] successor = Files.readAllBytes(file);
+        assertEquals(SeedFile.SEED_LENGTH, successor.length);
+        assertFalse(Arrays.equals(seed, successor));
+    }
+
+    @Test
+    public void successorDependsOnLiveEntropy() throws Exception {
+
+        byte[] seed = seed();
+        Path first = write("first", seed);
+        Path second = write("second", seed);
+        Path without = write("without", seed);
+
+        new SeedFile(constant((byte) 0x11), first).refresh.get(5, TimeUnit.SECONDS);
+        new SeedFile(constant((byte) 0x22), second).refresh.get(5, TimeUnit.SECONDS);
+        new SeedFile(FAILING, without).refresh.get(5, TimeUnit.SECONDS);
+
+        assertFalse(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(second)));
+        assertFalse(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(without)));
+        assertFalse(Arrays.equals(Files.readAllBytes(second), Files.readAllBytes(without)));
+    }
+
+    @Test
+    public void predictionResistanceIsNotServedFromSeed() throws Exception {
+
+        // A source that has no entropy yet: it fails prediction resistant requests
+        // and blocks the others.
+        CountDownLatch release = new CountDownLatch(1);
+        Entropy starved = (strength, min_length, max_length, prediction_resistance_request) -> {
+            if (!prediction_resistance_request) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new Tuple2<Status, byte[]>(Status.ERROR_FLAG, null);
+        };
+
+        try {
+            SeedFile seed_file = new SeedFile(starved, write("seed", seed()));
+            assertTrue(seed_file.hasSeed());
+
+            Tuple2<Status, byte[]> entropy_input = seed_file.Get_entropy_input(256, 256, 256, true);
+            assertEquals(Status.ERROR_FLAG, entropy_input.first);
+
+            entropy_input = seed_file.Get_entropy_input(256, 256, 256, false);
+            assertEquals(Status.SUCCESS, entropy_input.first);
+            assertEquals(32, entropy_input.second.length);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void missingFileIsNotASeed() throws Exception {
+
+        Path file = folder.getRoot().toPath().resolve("seed");
+        SeedFile seed_file = new SeedFile(new SecureRandomEntropy(), file);
+        assertFalse(seed_file.hasSeed());
+        assertFalse(Files.exists(file));
+
+        save(seed_file);
+        assertSaved(file);
+    }
+
+    @Test
+    public void truncatedFileIsNotASeed() throws Exception {
+
+        Path file = write("seed", Arrays.copyOf(seed(), SeedFile.SEED_LENGTH - 1));
+        SeedFile seed_file = new SeedFile(new SecureRandomEntropy(), file);
+        assertFalse(seed_file.hasSeed());
+
+        save(seed_file);
+        assertSaved(file);
+    }
+
+    @Test
+    public void successorIsOwnerOnly() throws Exception {
+
+        Path file = write("seed", seed());
+        Files.write(file.resolveSibling("seed.tmp"), new byte[] { 1, 2, 3 });
+
+        SeedFile seed_file = new SeedFile(new SecureRandomEntropy(), file);
+        seed_file.refresh.get(5, TimeUnit.SECONDS);
+        assertSaved(file);
+    }
+
+    // ----- Local implementation
+
+    private static byte[] seed() {
+
+        byte[] seed = new byte[SeedFile.SEED_LENGTH];
+        for (int i = 0; i < seed.length; i++)
+            seed[i] = (byte) i;
+        return seed;
+    }
+
+    private Path write(String name, byte[] contents) throws IOException {
+
+        return Files.write(folder.getRoot().toPath().resolve(name), contents);
+    }
+
+    private static void save(SeedFile seed_file) throws IOException {
+
+        Mechanism mechanism = new Mechanism(new SecureRandomEntropy(), new Nonce(),
+                new HashDrbg(HashDrbg.Hash.SHA_256, true));
+        Tuple2<Status, Integer> instantiated = mechanism.Instantiate_function(256, false, null);
+        assertEquals(Status.SUCCESS, instantiated.first);
+        assertEquals(Status.SUCCESS, seed_file.save(mechanism, instantiated.second));
+    }
+
+    private static void assertSaved(Path file) throws IOException {
+
+        byte[] saved = Files.readAllBytes(file);
+        assertEquals(SeedFile.SEED_LENGTH, saved.length);
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        assertFalse(Arrays.equals(new byte[SeedFile.SEED_LENGTH], saved));
+    }
+}
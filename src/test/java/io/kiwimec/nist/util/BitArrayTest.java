@@ -0,0 +1,248 @@
+package io.kiwimec.nist.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks BitArray against a BigInteger model, in which a bit string of len bits
+ * is the unsigned integer its bits spell with bit 0 the most significant.
+ * Lengths sit either side of the 64-bit word boundaries.
+ */
+public class BitArrayTest {
+
+    private static final long[] LENGTHS = { 1, 7, 8, 9, 63, 64, 65, 127, 128, 129, 191, 192, 193, 440 };
+
+    private static final int ROUNDS = 200;
+
+    private final Random random = new Random(0x800_90AL);
+
+    @Test
+    public void bitZeroIsMostSignificant() {
+
+        BitArray x = new BitArray(new byte[] { (byte) 0x80, 0x01 });
+        assertTrue(x.getBit(0));
+        assertFalse(x.getBit(1));
+        assertTrue(x.getBit(15));
+
+        BitArray y = new BitArray(65);
+        y.setBit(0, true);
+        y.setBit(64, true);
+        assertArrayEquals(new byte[] { (byte) 0x80, 0, 0, 0, 0, 0, 0, 0, (byte) 0x80 }, y.toByteArray());
+    }
+
+    @Test
+    public void paddingIsZero() {
+
+        byte[] ones = new byte[9];
+        Arrays.fill(ones, (byte) 0xFF);
+        BitArray x = new BitArray(ones, 0, 65);
+        assertArrayEquals(new byte[] { -1, -1, -1, -1, -1, -1, -1, -1, (byte) 0x80 }, x.toByteArray());
+        assertEquals(x, new BitArray(x.toByteArray(), 0, 65));
+    }
+
+    @Test
+    public void toByteArrayMatchesModel() {
+
+        for (long len : LENGTHS) {
+            for (int round = 0; round < ROUNDS; round++) {
+                byte[] bytes = randomBytes(len);
+                BitArray x = new BitArray(bytes, 0, len);
+                assertEquals(len, x.getLength());
+                assertArrayEquals("len " + len, toBytes(model(bytes, len), len), x.toByteArray());
+
+                byte[] target = new byte[bytes.length + 3];
+                x.toByteArray(target, 3);
+                for (int i = 0; i < bytes.length; i++)
+                    assertEquals(x.toByteArray()[i], target[3 + i]);
+            }
+        }
+    }
+
+    @Test
+    public void selectMatchesModel() {
+
+        for (long len : LENGTHS) {
+            for (int round = 0; round < ROUNDS; round++) {
+                byte[] bytes = randomBytes(len);
+                BigInteger v = model(bytes, len);
+                BitArray x = new BitArray(bytes, 0, len);
+
+                long i = 1 + nextLong(len);
+                long j = i + nextLong(len - i + 1);
+                BigInteger expected = v.shiftRight((int) (len - j)).and(mask(j - i + 1));
+                assertEquals("select (" + i + ", " + j + ") of " + len, value(expected, j - i + 1),
+                        x.select(i, j));
+            }
+
+            BitArray x = new BitArray(randomBytes(len), 0, len);
+            assertEquals(x, x.select(1, len));
+            assertEquals(x, x.leftmost(len));
+            assertEquals(x, x.rightmost(len));
+        }
+    }
+
+    @Test
+    public void concatMatchesModel() {
+
+        for (long x_len : LENGTHS) {
+            for (long y_len : LENGTHS) {
+                byte[] x_bytes = randomBytes(x_len);
+                byte[] y_bytes = randomBytes(y_len);
+                BigInteger expected = model(x_bytes, x_len).shiftLeft((int) y_len).or(model(y_bytes, y_len));
+
+                BitArray xy = new BitArray(x_bytes, 0, x_len).concat(new BitArray(y_bytes, 0, y_len));
+                assertEquals(x_len + " || " + y_len, value(expected, x_len + y_len), xy);
+                assertEquals(new BitArray(x_bytes, 0, x_len), xy.leftmost(x_len));
+                assertEquals(new BitArray(y_bytes, 0, y_len), xy.rightmost(y_len));
+            }
+        }
+    }
+
+    @Test
+    public void xorMatchesModel() {
+
+        for (long len : LENGTHS) {
+            byte[] x_bytes = randomBytes(len);
+            byte[] y_bytes = randomBytes(len);
+            BigInteger expected = model(x_bytes, len).xor(model(y_bytes, len));
+            assertEquals(value(expected, len), new BitArray(x_bytes, 0, len).xor(new BitArray(y_bytes, 0, len)));
+        }
+    }
+
+    @Test
+    public void incrementMatchesModel() {
+
+        for (long len : LENGTHS) {
+            for (int round = 0; round < ROUNDS; round++) {
+                byte[] bytes = randomBytes(len);
+                // Carries are the interesting case, so the rightmost bits are
+                // often all ones.
+                if (round % 2 == 0)
+                    bytes = setRightmost(bytes, len, 1 + nextLong(len));
+                BitArray x = new BitArray(bytes, 0, len);
+                long n = nextLong(len + 1);
+
+                assertEquals("increment " + n + " of " + len, value(incremented(model(bytes, len), len, n), len),
+                        x.increment(n));
+            }
+
+            // All ones wraps to zero within n bits.
+            byte[] ones = setRightmost(new byte[(int) ((len + 7) >>> 3)], len, len);
+            assertEquals(new BitArray(len), new BitArray(ones, 0, len).increment(len));
+        }
+    }
+
+    @Test
+    public void byteIncrementMatchesModel() {
+
+        for (int bytes = 1; bytes <= 48; bytes++) {
+            for (int round = 0; round < ROUNDS / 4; round++) {
+                byte[] x = new byte[bytes];
+                random.nextBytes(x);
+                long len = (long) bytes << 3;
+                if (round % 2 == 0)
+                    x = setRightmost(x, len, 1 + nextLong(len));
+                int n = (int) nextLong(len + 1);
+
+                BigInteger expected = incremented(new BigInteger(1, x), len, n);
+                BitArray.increment(x, n);
+                assertArrayEquals("increment " + n + " of " + len, toBytes(expected, len), x);
+            }
+        }
+    }
+
+    @Test
+    public void addMatchesModel() {
+
+        for (int x_length = 8; x_length <= 111; x_length++) {
+            int y_length = 1 + random.nextInt(x_length);
+            byte[] x = new byte[x_length];
+            byte[] y = new byte[y_length];
+            random.nextBytes(x);
+            random.nextBytes(y);
+            // Long carry chains.
+            if (x_length % 3 == 0)
+                Arrays.fill(x, (byte) 0xFF);
+
+            long len = (long) x_length << 3;
+            BigInteger expected = new BigInteger(1, x).add(new BigInteger(1, y)).and(mask(len));
+            BitArray.add(x, y);
+            assertArrayEquals(x_length + " + " + y_length, toBytes(expected, len), x);
+
+            long z = random.nextLong() & Long.MAX_VALUE;
+            expected = expected.add(BigInteger.valueOf(z)).and(mask(len));
+            BitArray.add(x, z);
+            assertArrayEquals(x_length + " + long", toBytes(expected, len), x);
+        }
+    }
+
+    // ----- Local implementation
+
+    private byte[] randomBytes(long len) {
+
+        byte[] bytes = new byte[(int) ((len + 7) >>> 3)];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private long nextLong(long bound) {
+
+        return (random.nextLong() & Long.MAX_VALUE) % bound;
+    }
+
+    /**
+     * The leftmost len bits of <code>bytes</code> as an integer.
+     */
+    private static BigInteger model(byte[] bytes, long len) {
+
+        return new BigInteger(1, bytes).shiftRight((int) (((long) bytes.length << 3) - len));
+    }
+
+    /**
+     * The len bit string spelling <code>v</code>.
+     */
+    private static byte[] toBytes(BigInteger v, long len) {
+
+        int length = (int) ((len + 7) >>> 3);
+        byte[] magnitude = v.shiftLeft((int) (((long) length << 3) - len)).toByteArray();
+        byte[] bytes = new byte[length];
+        int copied = Math.min(length, magnitude.length);
+        System.arraycopy(magnitude, magnitude.length - copied, bytes, length - copied, copied);
+        return bytes;
+    }
+
+    private static BitArray value(BigInteger v, long len) {
+
+        return new BitArray(toBytes(v, len), 0, len);
+    }
+
+    private static BigInteger mask(long n) {
+
+        return BigInteger.ONE.shiftLeft((int) n).subtract(BigInteger.ONE);
+    }
+
+    /**
+     * leftmost (v, len - n) || ((rightmost (v, n) + 1) mod 2^n).
+     */
+    private static BigInteger incremented(BigInteger v, long len, long n) {
+
+        BigInteger low = v.and(mask(n));
+        return v.subtract(low).add(low.add(BigInteger.ONE).and(mask(n)));
+    }
+
+    /**
+     * Sets the rightmost <code>n</code> of the len bits of <code>bytes</code>.
+     */
+    private static byte[] setRightmost(byte[] bytes, long len, long n) {
+
+        return toBytes(model(bytes, len).or(mask(n)), len);
+    }
+}